@@ -0,0 +1,89 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.CardNumber;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка CardDTO из сущностей (с маскированием номера) и сериализация страницы
+ * карт в JSON тем же набором модулей Jackson, что и в приложении.
+ * Данные генерируются с фиксированными значениями, без случайности.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx512m")
+@State(Scope.Benchmark)
+public class CardDtoBenchmark {
+
+    @Param({"20", "1000"})
+    public int pageSize;
+
+    private CardNumber cardNumber;
+    private ObjectMapper objectMapper;
+    private List<Card> cards;
+    private Page<CardDTO> page;
+
+    @Setup
+    public void setUp() {
+        cardNumber = new CardNumber();
+        // Как в Spring Boot: JavaTimeModule и даты строками
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        User owner = new User(1L, "benchmark-user", "hash", Role.USER);
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        cards = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            Card card = new Card();
+            card.setId((long) i);
+            card.setOwner(owner);
+            card.setEncryptedNumber(cardNumber.encrypt(String.format("4276%012d", i)));
+            card.setExpiryDate(LocalDate.of(2030, 1 + i % 12, 1));
+            card.setStatus(CardStatus.values()[i % CardStatus.values().length]);
+            card.setBalance(BigDecimal.valueOf(i * 100L + 50, 2));
+            card.setBlockRequest(i % 10 == 0);
+            card.setCreatedAt(createdAt.plusMinutes(i));
+            cards.add(card);
+        }
+        page = new PageImpl<>(toDtos(), PageRequest.of(0, pageSize), pageSize * 10L);
+    }
+
+    @Benchmark
+    public List<CardDTO> buildDtos() {
+        return toDtos();
+    }
+
+    @Benchmark
+    public String serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(page);
+    }
+
+    private List<CardDTO> toDtos() {
+        List<CardDTO> dtos = new ArrayList<>(cards.size());
+        for (Card card : cards) {
+            dtos.add(new CardDTO(card, cardNumber.getMasked(card.getEncryptedNumber())));
+        }
+        return dtos;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.CardNumber;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация, "шифрование" и маскирование номера карты. Номер для encrypt/getMasked
+ * фиксированный, чтобы результаты разных запусков были сравнимы.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx512m")
+@State(Scope.Benchmark)
+public class CardNumberBenchmark {
+
+    private static final String RAW_NUMBER = "4276123456789012";
+
+    private CardNumber cardNumber;
+    private String encrypted;
+
+    @Setup
+    public void setUp() {
+        cardNumber = new CardNumber();
+        encrypted = cardNumber.encrypt(RAW_NUMBER);
+    }
+
+    @Benchmark
+    public String generateRandomNumber() {
+        return cardNumber.generateRandomNumber();
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return cardNumber.encrypt(RAW_NUMBER);
+    }
+
+    @Benchmark
+    public String getMasked() {
+        return cardNumber.getMasked(encrypted);
+    }
+}
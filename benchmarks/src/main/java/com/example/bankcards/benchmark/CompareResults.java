@@ -0,0 +1,77 @@
+package com.example.bankcards.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Сравнивает два JSON-результата JMH (-rf json) и завершается с кодом 1, если какой-то
+ * бенчмарк стал хуже базового больше чем на threshold процентов и разница при этом
+ * больше суммы погрешностей обоих замеров. Бенчмарки, которых нет в базовом файле, пропускаются.
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.example.bankcards.benchmark.CompareResults base.json new.json [10]
+ */
+public final class CompareResults {
+
+    private record Score(String mode, double score, double error, String unit) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Использование: CompareResults <base.json> <current.json> [threshold, %]");
+            System.exit(2);
+        }
+        Map<String, Score> base = read(new File(args[0]));
+        Map<String, Score> current = read(new File(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = base.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            Score after = entry.getValue();
+            // В режиме thrpt больше - лучше, в avgt/sample/ss - наоборот
+            boolean higherIsBetter = "thrpt".equals(after.mode());
+            double change = (after.score() - before.score()) / before.score() * 100;
+            double worse = higherIsBetter ? -change : change;
+            boolean significant = Math.abs(after.score() - before.score()) > before.error() + after.error();
+            boolean regressed = worse > threshold && significant;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-8s %-90s %12.3f -> %12.3f %s (%+.1f%%)%n",
+                    regressed ? "REGRESS" : "ok", entry.getKey(), before.score(), after.score(), after.unit(), change);
+        }
+        if (regressions > 0) {
+            System.out.printf("Регрессий: %d (порог %.1f%%)%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText());
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            JsonNode metric = result.get("primaryMetric");
+            double error = metric.get("scoreError").asDouble();
+            scores.put(key.toString(), new Score(result.get("mode").asText(), metric.get("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error, metric.get("scoreUnit").asText()));
+        }
+        return scores;
+    }
+}
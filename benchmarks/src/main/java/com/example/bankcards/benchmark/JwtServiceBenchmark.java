@@ -0,0 +1,110 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.entity.JwtSigningKey;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.JwtSigningKeyRepository;
+import com.example.bankcards.service.JwtKeyRing;
+import com.example.bankcards.service.JwtService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подпись и проверка JWT: legacy* повторяют прежнюю реализацию JwtService
+ * (ключ и парсер создаются на каждый вызов), остальные методы вызывают текущую.
+ * verify с verifiedCacheSize=0 каждый раз проверяет подпись, с ненулевым - берёт claims из кэша.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx512m")
+@State(Scope.Benchmark)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "q8p0Qv6sZ1b3m9XyT4wR7eU2iO5aS8dF0gH3jK6lZ9x=";
+
+    @Param({"HS256", "ES256"})
+    public String algorithm;
+
+    @Param({"0", "10000"})
+    public long verifiedCacheSize;
+
+    private JwtService jwtService;
+    private User user;
+    private String token;
+    private String legacyToken;
+
+    @Setup
+    public void setUp() throws IOException {
+        JwtKeyRing keyRing = new JwtKeyRing(new ByteArrayResource(SECRET.getBytes(StandardCharsets.UTF_8)),
+                inMemoryKeys(), algorithm, Duration.ofDays(1), Duration.ofHours(1),
+                Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofMinutes(5));
+        jwtService = new JwtService(keyRing, verifiedCacheSize);
+        jwtService.jwtExpirationAccess = TimeUnit.HOURS.toMillis(1);
+        jwtService.jwtExpirationRefresh = TimeUnit.DAYS.toMillis(1);
+
+        user = new User(1L, "benchmark-user", "hash", Role.USER);
+        token = jwtService.generateAccessToken(user);
+        legacyToken = legacySign();
+    }
+
+    // Таблица jwt_signing_keys в памяти: бенчмарк не поднимает БД, а ключ ES256 вставляется один раз при старте
+    private static JwtSigningKeyRepository inMemoryKeys() {
+        List<JwtSigningKey> rows = new ArrayList<>();
+        return (JwtSigningKeyRepository) Proxy.newProxyInstance(JwtSigningKeyRepository.class.getClassLoader(),
+                new Class<?>[]{JwtSigningKeyRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> List.copyOf(rows);
+                    case "insertIfNoneActiveAfter" -> {
+                        rows.add(new JwtSigningKey((String) args[0], (String) args[1], (String) args[2],
+                                (LocalDateTime) args[3]));
+                        yield 1;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtService.generateAccessToken(user);
+    }
+
+    @Benchmark
+    public String verify() {
+        return jwtService.extractUsername(token);
+    }
+
+    @Benchmark
+    public String legacySign() {
+        return Jwts.builder()
+                .setSubject(user.getUsername())
+                .claim("role", user.getRole())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + jwtService.jwtExpirationAccess))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public String legacyVerify() {
+        return Jwts.parserBuilder()
+                .setSigningKey(SECRET.getBytes())
+                .build()
+                .parseClaimsJws(legacyToken)
+                .getBody()
+                .getSubject();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.dto.UserAuthDTO;
+import com.example.bankcards.dto.UserDTO;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.UserMapper;
+import com.example.bankcards.util.UserMapperImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг пользователя сгенерированным MapStruct-маппером в обе стороны.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx512m")
+@State(Scope.Benchmark)
+public class UserMapperBenchmark {
+
+    private UserMapper userMapper;
+    private UserAuthDTO authDto;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        userMapper = new UserMapperImpl();
+        authDto = new UserAuthDTO("benchmark-user", "password1");
+        user = new User(1L, "benchmark-user", "hash", Role.USER);
+    }
+
+    @Benchmark
+    public User mapAuthDto() {
+        return userMapper.map(authDto);
+    }
+
+    @Benchmark
+    public UserDTO mapUser() {
+        return userMapper.map(user);
+    }
+}
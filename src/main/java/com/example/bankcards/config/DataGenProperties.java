@@ -0,0 +1,43 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "datagen")
+public class DataGenProperties {
+
+    private long users = 1_000_000;
+
+    private int cardsPerUser = 3;
+
+    // Переводы идут только между картами одного владельца, при одной карте их не будет
+    private int transactionsPerCard = 10;
+
+    private int refreshTokensPerUser = 1;
+
+    private long seed = 42;
+
+    // 0 означает число процессоров; больше пула соединений ставить бессмысленно
+    private int threads = 0;
+
+    // Пользователей в одной задаче; задачи выполняются параллельно, каждая в своём соединении
+    private int chunkSize = 10_000;
+
+    // Строк в одном executeBatch и коммите
+    private int batchSize = 5_000;
+
+    // Пароль всех сгенерированных пользователей
+    private String password = "password";
+
+    // Момент, от которого отсчитываются даты. По умолчанию начало текущих суток:
+    // для одинаковых данных в разные дни его нужно задать явно
+    private LocalDateTime referenceTime;
+
+    // Остановить приложение после генерации
+    private boolean exitOnFinish = true;
+}
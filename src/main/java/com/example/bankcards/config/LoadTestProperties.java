@@ -0,0 +1,51 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestProperties {
+
+    private int users = 1000;
+
+    // Карты раздаются пользователям по кругу; для переводов у пользователя нужно хотя бы две
+    private int cards = 5000;
+
+    // Пароль всех сгенерированных пользователей
+    private String password = "load-password";
+
+    // Число клиентских потоков, каждый шлёт следующий запрос после ответа на предыдущий
+    private int concurrency = 32;
+
+    private Duration warmup = Duration.ofSeconds(10);
+
+    private Duration duration = Duration.ofSeconds(60);
+
+    private long seed = 42;
+
+    // Остановить приложение после отчёта
+    private boolean exitOnFinish = true;
+
+    private Mix mix = new Mix();
+
+    // Относительные веса операций
+    @Getter
+    @Setter
+    public static class Mix {
+
+        private int login = 5;
+
+        private int refresh = 5;
+
+        private int list = 40;
+
+        private int balance = 40;
+
+        private int transfer = 10;
+    }
+}
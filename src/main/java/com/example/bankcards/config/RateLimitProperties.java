@@ -0,0 +1,44 @@
+package com.example.bankcards.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Validated
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Сколько ключей (пользователь или IP + маршрут) держим в памяти одновременно
+    @Min(1)
+    private int maxKeys = 100_000;
+
+    @Valid
+    private List<Route> routes = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Route {
+
+        // null означает любой метод
+        private String method;
+
+        private String path;
+
+        // capacity запросов за period, из них до capacity подряд
+        @Min(1)
+        private int capacity;
+
+        private Duration period = Duration.ofMinutes(1);
+    }
+}
@@ -2,16 +2,21 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.TokenRefreshDTO;
 import com.example.bankcards.dto.UserAuthDTO;
+import com.example.bankcards.entity.RefreshToken;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.InvalidCredentialsException;
 import com.example.bankcards.exception.InvalidRefreshTokenException;
 import com.example.bankcards.exception.UsernameNotUniqueException;
-import com.example.bankcards.repository.RefreshTokenRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AccessTokenDenylist;
+import com.example.bankcards.security.PasswordHashingGate;
+import com.example.bankcards.security.UserDetailsCache;
 import com.example.bankcards.service.JwtService;
 import com.example.bankcards.service.RefreshTokenService;
 import com.example.bankcards.util.UserMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
@@ -26,6 +31,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -45,8 +52,9 @@ public class AuthController {
     private UserMapper userMapper;
     private PasswordEncoder passwordEncoder;
     private RefreshTokenService refreshTokenService;
-    private RefreshTokenRepository refreshTokenRepository;
-
+    private UserDetailsCache userDetailsCache;
+    private PasswordHashingGate passwordHashingGate;
+    private AccessTokenDenylist accessTokenDenylist;
 
     public AuthController(UserRepository userRepository,
                           AuthenticationManager authenticationManager,
@@ -54,14 +62,18 @@ public class AuthController {
                           UserMapper userMapper,
                           PasswordEncoder passwordEncoder,
                           RefreshTokenService refreshTokenService,
-                          RefreshTokenRepository refreshTokenRepository) {
+                          UserDetailsCache userDetailsCache,
+                          PasswordHashingGate passwordHashingGate,
+                          AccessTokenDenylist accessTokenDenylist) {
         this.userRepository = userRepository;
         this.authenticationManager = authenticationManager;
         this.jwtService = jwtService;
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
         this.refreshTokenService = refreshTokenService;
-        this.refreshTokenRepository = refreshTokenRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.passwordHashingGate = passwordHashingGate;
+        this.accessTokenDenylist = accessTokenDenylist;
     }
 
     @PostMapping(value = "/register")
@@ -82,16 +94,17 @@ public class AuthController {
                     .body(Map.of("errors", errors));
         }
 
-        if(userRepository.findByUsername(userAuthDTO.getUsername()).isPresent()){
-            throw new UsernameNotUniqueException(userAuthDTO.getUsername());
-        }
-
         User user = userMapper.map(userAuthDTO);
 
-        user.setEncryptedPassword(passwordEncoder.encode(userAuthDTO.getPassword()));
+        user.setEncryptedPassword(passwordHashingGate.run("register", () -> passwordEncoder.encode(userAuthDTO.getPassword())));
         user.setRole(Role.USER);
 
-        userRepository.save(user);
+        // Уникальность проверяет сама БД: два одновременных запроса с одним именем не дойдут до ошибки констрейнта
+        if (userRepository.insertIfAbsent(user.getUsername(), user.getEncryptedPassword(), user.getRole().name()) == 0) {
+            throw new UsernameNotUniqueException(user.getUsername());
+        }
+        // Имя могло попасть в кэш как несуществующее
+        userDetailsCache.evict(user.getUsername());
 
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(userMapper.map(user));
@@ -102,17 +115,18 @@ public class AuthController {
             description = "Аутентификация пользователя, возвращает access и refresh JWT токены",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Успешный вход"),
-                    @ApiResponse(responseCode = "401", description = "Неверный логин или пароль")
+                    @ApiResponse(responseCode = "401", description = "Неверный логин или пароль"),
+                    @ApiResponse(responseCode = "503", description = "Слишком много одновременных входов")
             }
     )
     public ResponseEntity<?> login(@RequestBody UserAuthDTO userAuthDTO){
         try {
-            Authentication authentication = authenticationManager.authenticate(
+            Authentication authentication = passwordHashingGate.run("login", () -> authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
                             userAuthDTO.getUsername(),
                             userAuthDTO.getPassword()
                     )
-            );
+            ));
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
 
@@ -122,7 +136,7 @@ public class AuthController {
             String jwtRefresh = jwtService.generateRefreshToken(user);
 
             refreshTokenService.saveRefreshToken(jwtRefresh, user.getUsername(),
-                    LocalDateTime.now().plusSeconds(jwtService.jwtExpirationRefresh));
+                    LocalDateTime.now().plus(Duration.ofMillis(jwtService.jwtExpirationRefresh)));
 
             return ResponseEntity.status(HttpStatus.OK)
                     .body(Map.of("jwtAccess", jwtAccess,
@@ -134,38 +148,68 @@ public class AuthController {
 
     @PostMapping(value = "/refresh")
     @Operation(
-            description = "Обновление access токена, принимает refreshToken и возвращает новый accessToken",
+            description = "Обновление токенов, принимает refreshToken и возвращает новые accessToken и refreshToken. " +
+                    "Повторное использование старого refreshToken завершает сессию",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Токен обновлен"),
                     @ApiResponse(responseCode = "404", description = "Невалидный refreshToken")
             }
     )
     public ResponseEntity<?> refresh(@RequestBody TokenRefreshDTO tokenRefreshDTO){
-        if (refreshTokenService.isValid(tokenRefreshDTO.getRefreshToken())){
-            String username = refreshTokenService.getUsernameByToken(tokenRefreshDTO.getRefreshToken());
-            User user = userRepository.findByUsername(username).get();
-
-            String accessToken = jwtService.generateAccessToken(user);
-            return ResponseEntity.ok()
-                    .body(Map.of("jwtAccess", accessToken));
-        } throw new InvalidRefreshTokenException();
+        RefreshToken previous = refreshTokenService.useRefreshToken(tokenRefreshDTO.getRefreshToken())
+                .orElseThrow(InvalidRefreshTokenException::new);
+        User user = userRepository.findByUsername(previous.getUsername()).get();
+
+        String accessToken = jwtService.generateAccessToken(user);
+        String refreshToken = jwtService.generateRefreshToken(user);
+        refreshTokenService.saveRotatedToken(refreshToken, previous,
+                LocalDateTime.now().plus(Duration.ofMillis(jwtService.jwtExpirationRefresh)));
+
+        return ResponseEntity.ok()
+                .body(Map.of("jwtAccess", accessToken,
+                        "jwtRefresh", refreshToken));
     }
 
     @DeleteMapping("/logout")
     @Operation(
-            description = "Выход пользователя, удаляет refresh токен из БД, делая его недействительным",
+            description = "Выход пользователя, удаляет refresh токен из БД, делая его недействительным. " +
+                    "Access токен из заголовка Authorization, если он передан, отзывается до истечения срока",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Успешный выход"),
                     @ApiResponse(responseCode = "400", description = "Токен невалидный")
             }
     )
-    public ResponseEntity<?> logout(@RequestBody TokenRefreshDTO tokenRefreshDTO) {
-        if (refreshTokenRepository.findByToken(tokenRefreshDTO.getRefreshToken()).isEmpty()){
+    public ResponseEntity<?> logout(@RequestBody TokenRefreshDTO tokenRefreshDTO,
+                                    @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        if (!refreshTokenService.deleteRefreshToken(tokenRefreshDTO.getRefreshToken())){
             throw new InvalidRefreshTokenException();
         }
-        refreshTokenService.deleteRefreshToken(tokenRefreshDTO.getRefreshToken());
+
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                Claims claims = jwtService.parseClaims(authHeader.substring(7));
+                accessTokenDenylist.revoke(claims.getId(), claims.getExpiration());
+            } catch (JwtException | IllegalArgumentException e) {
+                // Истёкший или чужой токен отзывать не нужно
+            }
+        }
         return ResponseEntity.status(HttpStatus.OK)
                 .body(Map.of("message", "Logged out"));
     }
 
+    @DeleteMapping("/logout-all")
+    @Operation(
+            description = "Выход на всех устройствах, удаляет все refresh токены текущего пользователя",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Успешный выход"),
+                    @ApiResponse(responseCode = "401", description = "Пользователь не аутентифицирован")
+            }
+    )
+    public ResponseEntity<?> logoutAll(Principal principal) {
+        int sessions = refreshTokenService.deleteAllRefreshTokens(principal.getName());
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(Map.of("message", "Logged out",
+                        "sessions", sessions));
+    }
+
 }
@@ -2,19 +2,29 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardCreateDTO;
 import com.example.bankcards.dto.TransactionRequestDTO;
+import com.example.bankcards.service.CardExportService;
 import com.example.bankcards.service.CardService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import org.springframework.data.domain.Pageable;
 import java.security.Principal;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/cards")
@@ -22,9 +32,14 @@ import java.util.NoSuchElementException;
 public class CardController {
 
     private final CardService cardService;
+    private final CardExportService cardExportService;
 
-    public CardController(CardService cardService) {
+    @Value("${cards.export.max-page-size:1000000}")
+    private int maxStreamPageSize;
+
+    public CardController(CardService cardService, CardExportService cardExportService) {
         this.cardService = cardService;
+        this.cardExportService = cardExportService;
     }
 
 
@@ -32,28 +47,60 @@ public class CardController {
     @PreAuthorize("hasRole('USER')")
     @Operation(
             summary = "Список своих карт",
-            description = "Возвращает список карт текущего пользователя с возможностью поиска и пагинации",
+            description = "Возвращает список карт текущего пользователя с возможностью поиска и пагинации. " +
+                    "С slice=true возвращает страницу без общего количества (режим \"загрузить ещё\"), " +
+                    "поиск в этом режиме не поддерживается",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Карты найдены")
+                    @ApiResponse(responseCode = "200", description = "Карты найдены"),
+                    @ApiResponse(responseCode = "400", description = "search передан вместе с slice=true")
             }
     )
     public ResponseEntity<?> getMyCards(@RequestParam(name = "search", required = false) String search,
+                                        @RequestParam(name = "slice", defaultValue = "false") boolean slice,
                                         Pageable pageable,
                                         Principal principal) {
+        if (slice) {
+            // Без фильтра вернулись бы все карты, как будто поиск ничего не отсеял
+            if (search != null) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("errors", List.of("Параметр search нельзя использовать вместе с slice=true")));
+            }
+            return ResponseEntity.ok(cardService.getMyCardsSlice(principal.getName(), pageable));
+        }
         return ResponseEntity.ok(cardService.getMyCards(principal.getName(), search, pageable));
     }
 
+    @GetMapping("/summary")
+    @PreAuthorize("hasRole('USER')")
+    @Operation(
+            summary = "Сводка по своим картам",
+            description = "Общий баланс и количество карт по статусам для текущего пользователя",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Сводка получена")
+            }
+    )
+    public ResponseEntity<?> getSummary(Principal principal) {
+        return ResponseEntity.ok(cardService.getSummary(principal.getName()));
+    }
+
     @GetMapping("/{cardId}")
     @PreAuthorize("hasRole('USER')")
     @Operation(
             summary = "Информация о своей карте",
+            description = "Поддерживает If-None-Match: если карта не менялась, возвращается 304 без тела",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Карта найдена"),
+                    @ApiResponse(responseCode = "304", description = "Карта не изменилась"),
                     @ApiResponse(responseCode = "404", description = "Карта не найдена")
             }
     )
-    public ResponseEntity<?> getMyCard(@PathVariable("cardId") Long id, Principal principal) {
-        return ResponseEntity.ok(cardService.getMyCard(principal.getName(), id));
+    public ResponseEntity<?> getMyCard(@PathVariable("cardId") Long id, Principal principal, WebRequest request) {
+        if (request.checkNotModified(cardEtag(principal.getName(), id))) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(cardService.getMyCard(principal.getName(), id));
     }
 
     @PostMapping("/transaction")
@@ -90,13 +137,20 @@ public class CardController {
     @PreAuthorize("hasRole('USER')")
     @Operation(
             summary = "Баланс карты",
+            description = "Поддерживает If-None-Match: если карта не менялась, возвращается 304 без тела",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Баланс возвращен"),
+                    @ApiResponse(responseCode = "304", description = "Баланс не изменился"),
                     @ApiResponse(responseCode = "404", description = "Карта не найдена")
             }
     )
-    public ResponseEntity<?> getBalance(@PathVariable("cardId") Long id, Principal principal) {
-        return ResponseEntity.ok(Map.of("balance", cardService.getBalance(principal.getName(), id)));
+    public ResponseEntity<?> getBalance(@PathVariable("cardId") Long id, Principal principal, WebRequest request) {
+        if (request.checkNotModified(cardEtag(principal.getName(), id))) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(Map.of("balance", cardService.getBalance(principal.getName(), id)));
     }
 
 
@@ -162,12 +216,119 @@ public class CardController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "Список всех карт",
-            description = "Возвращает все карты с пагинацией (для администратора)",
+            description = "Возвращает все карты с пагинацией (для администратора). " +
+                    "С slice=true возвращает страницу без общего количества",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Карты получены")
             }
     )
-    public ResponseEntity<?> getAllCards(Pageable pageable) {
+    public ResponseEntity<?> getAllCards(@RequestParam(name = "slice", defaultValue = "false") boolean slice,
+                                         Pageable pageable) {
+        if (slice) {
+            return ResponseEntity.ok(cardService.getAllCardsSlice(pageable));
+        }
         return ResponseEntity.ok(cardService.getAllCards(pageable));
     }
+
+    @GetMapping(value = "/all", params = "stream=true")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Потоковая выгрузка всех карт",
+            description = "Пишет страницу карт в ответ по мере чтения из БД, size не ограничен стандартным " +
+                    "максимумом. Если Accept-Encoding разрешает gzip (q больше 0), ответ сжимается",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Карты получены")
+            }
+    )
+    public ResponseEntity<StreamingResponseBody> streamAllCards(
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            Pageable pageable) {
+        Pageable page = size == null ? pageable : PageRequest.of(pageable.getPageNumber(),
+                Math.max(1, Math.min(size, maxStreamPageSize)), pageable.getSort());
+        boolean gzip = acceptsGzip(acceptEncoding);
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192);
+                cardExportService.writeAllCards(page, gzipOut);
+                gzipOut.finish();
+            } else {
+                cardExportService.writeAllCards(page, out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @GetMapping("/block-requests")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Очередь заявок на блокировку",
+            description = "Возвращает незакрытые заявки на блокировку в порядке поступления",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Заявки получены")
+            }
+    )
+    public ResponseEntity<?> getBlockRequests(Pageable pageable) {
+        return ResponseEntity.ok(cardService.getPendingBlockRequests(pageable));
+    }
+
+    @PostMapping("/block-requests/process")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Обработка следующих заявок на блокировку",
+            description = "Блокирует до limit самых старых заявок. Заявки, которые уже обрабатывает " +
+                    "другой администратор, пропускаются",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Заблокированные карты")
+            }
+    )
+    public ResponseEntity<?> processBlockRequests(@RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(Map.of("blocked", cardService.processNextBlockRequests(limit)));
+    }
+
+    // gzip подходит, если клиент перечислил его (или "*") с q больше 0; явный gzip;q=0 запрещает сжатие
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzipQuality = null;
+        Double anyQuality = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase("gzip")) {
+                gzipQuality = quality;
+            } else if (name.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+        if (gzipQuality != null) {
+            return gzipQuality > 0;
+        }
+        return anyQuality != null && anyQuality > 0;
+    }
+
+    // Hibernate увеличивает version при каждом обновлении карты, поэтому её достаточно для строгого ETag
+    private String cardEtag(String username, Long id) {
+        return "\"" + id + "-" + cardService.getCardVersion(username, id) + "\"";
+    }
 }
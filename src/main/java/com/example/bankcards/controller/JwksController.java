@@ -0,0 +1,38 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.service.JwtKeyRing;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@Tag(name = "Auth", description = "Регистрация, вход, refresh и logout")
+public class JwksController {
+
+    private final JwtKeyRing keyRing;
+
+    public JwksController(JwtKeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    @GetMapping("/.well-known/jwks.json")
+    @Operation(
+            description = "Публичные ключи для проверки подписи JWT (только для ES256, для HS256 список пуст)",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "JWK Set")
+            }
+    )
+    public ResponseEntity<?> getJwks() {
+        // Следующий ключ публикуется за publish-delay до начала подписи, а JwtKeyRing проверяет,
+        // что max-age в него укладывается: клиенты получают ключ раньше, чем им подпишут токен
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(keyRing.getJwksMaxAge()).cachePublic())
+                .body(Map.of("keys", keyRing.getPublicJwks()));
+    }
+}
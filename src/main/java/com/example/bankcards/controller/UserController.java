@@ -1,5 +1,6 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.UserDeletionDTO;
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.entity.ApiError;
 import com.example.bankcards.exception.ConflictErrorException;
@@ -14,6 +15,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import org.springframework.data.domain.Pageable;
+import java.net.URI;
 import java.security.Principal;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -44,12 +46,27 @@ public class UserController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "Список всех пользователей",
-            description = "Возвращает постраничный список пользователей (только для администратора)",
+            description = "Возвращает постраничный список пользователей (только для администратора). " +
+                    "С slice=true возвращает страницу без общего количества. " +
+                    "С search ищет по началу имени: страницы идут по имени, следующая запрашивается " +
+                    "с after равным полю next предыдущей, withCards=true добавляет число карт",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Успешный запрос")
             }
     )
-    public ResponseEntity<?> getAllUsers(Pageable pageable) {
+    public ResponseEntity<?> getAllUsers(@RequestParam(name = "slice", defaultValue = "false") boolean slice,
+                                         @RequestParam(name = "search", required = false) String search,
+                                         @RequestParam(name = "after", required = false) String after,
+                                         @RequestParam(name = "withCards", defaultValue = "false") boolean withCards,
+                                         Pageable pageable) {
+        if (search != null) {
+            return ResponseEntity.status(HttpStatus.OK)
+                    .body(userService.searchUsers(search, after, pageable.getPageSize(), withCards));
+        }
+        if (slice) {
+            return ResponseEntity.status(HttpStatus.OK)
+                    .body(Map.of("users",userService.getAllUsersSlice(pageable)));
+        }
         return ResponseEntity.status(HttpStatus.OK)
                 .body(Map.of("users",userService.getAllUsers(pageable)));
     }
@@ -74,17 +91,41 @@ public class UserController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "Удаление пользователя",
-            description = "Удаляет пользователя по ID. Администраторов удалить нельзя.",
+            description = "Удаляет пользователя по ID вместе с его картами и переводами. " +
+                    "Администраторов удалить нельзя. Пользователь с большим объёмом данных удаляется в фоне, " +
+                    "ход удаления доступен по /api/users/{userId}/deletion",
             responses = {
                     @ApiResponse(responseCode = "204", description = "Пользователь успешно удален"),
+                    @ApiResponse(responseCode = "202", description = "Удаление запущено в фоне"),
                     @ApiResponse(responseCode = "404", description = "Пользователь не найден"),
                     @ApiResponse(responseCode = "409", description = "Конфликт — невозможно удалить пользователя")
             }
     )
     public ResponseEntity<?> deleteUser(@PathVariable("userId") long id){
-        if (userService.deleteUser(id)){
+        UserDeletionDTO deletion = userService.deleteUser(id);
+        if (deletion.getStatus() == UserDeletionDTO.Status.DONE){
             return ResponseEntity.status(HttpStatus.NO_CONTENT)
                     .body(Map.of("message","Этот пользователь удален"));
+        }
+        if (deletion.getStatus() == UserDeletionDTO.Status.RUNNING){
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .location(URI.create("/api/users/" + id + "/deletion"))
+                    .body(deletion);
         }throw new ConflictErrorException("Не удалось удалить пользователя");
     }
+
+    @GetMapping("/{userId}/deletion")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Ход удаления пользователя",
+            description = "Возвращает статус и число уже удалённых карт и переводов (только для администратора)",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Успешный запрос"),
+                    @ApiResponse(responseCode = "404", description = "Удаление не найдено")
+            }
+    )
+    public ResponseEntity<?> getDeletion(@PathVariable("userId") long id) {
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(userService.getDeletion(id));
+    }
 }
@@ -0,0 +1,39 @@
+package com.example.bankcards.datagen;
+
+import com.example.bankcards.config.DataGenProperties;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Запускает генерацию синтетических данных в БД из spring.datasource после применения миграций.
+ */
+@Component
+@Profile("datagen")
+@EnableConfigurationProperties(DataGenProperties.class)
+public class DataGenRunner implements ApplicationRunner {
+
+    private final DataGenerator generator;
+    private final DataGenProperties properties;
+    private final ConfigurableApplicationContext context;
+
+    public DataGenRunner(DataGenerator generator,
+                         DataGenProperties properties,
+                         ConfigurableApplicationContext context) {
+        this.generator = generator;
+        this.properties = properties;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        generator.generate(properties);
+        if (properties.isExitOnFinish()) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+}
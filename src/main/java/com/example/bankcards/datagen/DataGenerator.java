@@ -0,0 +1,351 @@
+package com.example.bankcards.datagen;
+
+import com.example.bankcards.config.DataGenProperties;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.util.CardNumber;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Массовая генерация пользователей, карт, переводов и refresh-токенов.
+ * Пользователи делятся на чанки по chunk-size, чанки пишутся параллельно пакетными INSERT,
+ * каждый в своём соединении: сначала пользователи, потом их карты, переводы и токены,
+ * так что внешние ключи не нарушаются. id назначаются явно от текущего максимума, поэтому
+ * карты и переводы ссылаются на владельцев без чтения из БД, а после генерации счётчики
+ * identity переставляются за новый максимум.
+ * Каждая строка считается из seed и своего номера, а не из общего генератора, поэтому
+ * при тех же seed, reference-time и пустой схеме данные совпадают при любом числе потоков.
+ * У всех пользователей один пароль: BCrypt на миллион строк занял бы часы.
+ */
+@Slf4j
+@Component
+public class DataGenerator {
+
+    private static final String[] FIRST_NAMES = {"ivan", "petr", "anna", "maria", "oleg", "elena", "sergey",
+            "olga", "dmitry", "natalia", "alexey", "irina", "pavel", "tatiana", "nikolay", "svetlana"};
+    private static final String[] LAST_NAMES = {"ivanov", "petrov", "sidorov", "smirnov", "kuznetsov", "popov",
+            "vasiliev", "sokolov", "mikhailov", "novikov", "fedorov", "morozov", "volkov", "alekseev"};
+    private static final String[] DESCRIPTIONS = {"Перевод между своими картами", "Пополнение накопительной карты",
+            "Перевод на карту для покупок", "Возврат с кредитной карты"};
+    // Платёжные системы: Мир, Visa, Mastercard
+    private static final String[] BINS = {"2200", "4276", "5469"};
+    private static final long CARD_BODY_RANGE = 100_000_000_000L;
+    // Взаимно просто с 10^11, поэтому номера карт с разными id не совпадают
+    private static final long CARD_BODY_MULTIPLIER = 82_821_181L;
+
+    private static final long USER_SALT = 0x5DEECE66DL;
+    private static final long CARD_SALT = 0x2545F4914F6CDD1DL;
+    private static final long TRANSACTION_SALT = 0x9E3779B97F4A7C15L;
+    private static final long TOKEN_SALT = 0xBF58476D1CE4E5B9L;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final CardNumber cardNumber;
+
+    public DataGenerator(DataSource dataSource,
+                         JdbcTemplate jdbcTemplate,
+                         PasswordEncoder passwordEncoder,
+                         CardNumber cardNumber) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.cardNumber = cardNumber;
+    }
+
+    public void generate(DataGenProperties properties) throws InterruptedException {
+        long started = System.nanoTime();
+        LocalDateTime reference = properties.getReferenceTime() != null
+                ? properties.getReferenceTime() : LocalDate.now().atStartOfDay();
+        Plan plan = new Plan(properties, reference, passwordEncoder.encode(properties.getPassword()),
+                maxId("users"), maxId("cards"), maxId("card_transactions"));
+        Counters counters = new Counters();
+
+        int threads = properties.getThreads() > 0 ? properties.getThreads() : Runtime.getRuntime().availableProcessors();
+        log.info("Генерация: {} пользователей, {} карт на пользователя, {} переводов на карту, {} потоков",
+                properties.getUsers(), properties.getCardsPerUser(), properties.getTransactionsPerCard(), threads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (long from = 0; from < properties.getUsers(); from += properties.getChunkSize()) {
+                long to = Math.min(properties.getUsers(), from + properties.getChunkSize());
+                long chunkFrom = from;
+                chunks.add(executor.submit(() -> {
+                    writeChunk(plan, chunkFrom, to, counters);
+                    return null;
+                }));
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Генерация данных прервана", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        restartIdentity("users", plan.userBase + properties.getUsers());
+        restartIdentity("cards", plan.cardBase + properties.getUsers() * properties.getCardsPerUser());
+        restartIdentity("card_transactions", plan.transactionBase
+                + properties.getUsers() * properties.getCardsPerUser() * transactionsPerCard(properties));
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long rows = counters.users.get() + counters.cards.get() + counters.transactions.get() + counters.tokens.get();
+        log.info("Создано {} пользователей, {} карт, {} переводов, {} refresh-токенов за {} с ({} строк/с)",
+                counters.users.get(), counters.cards.get(), counters.transactions.get(), counters.tokens.get(),
+                String.format("%.1f", seconds), Math.round(rows / seconds));
+    }
+
+    private void writeChunk(Plan plan, long from, long to, Counters counters) throws SQLException {
+        DataGenProperties properties = plan.properties;
+        int cardsPerUser = properties.getCardsPerUser();
+        int transactionsPerCard = transactionsPerCard(properties);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Batch users = new Batch(connection, properties.getBatchSize(),
+                    "INSERT INTO users (id, username, encrypted_password, role) VALUES (?, ?, ?, ?)")) {
+                for (long user = from; user < to; user++) {
+                    SplittableRandom random = random(properties.getSeed(), USER_SALT, user);
+                    PreparedStatement statement = users.statement();
+                    statement.setLong(1, plan.userBase + user + 1);
+                    statement.setString(2, username(plan.userBase + user + 1, random));
+                    statement.setString(3, plan.passwordHash);
+                    // Примерно один администратор на тысячу пользователей
+                    statement.setString(4, (user % 1000 == 0 ? Role.ADMIN : Role.USER).name());
+                    users.add();
+                }
+            }
+            counters.users.addAndGet(to - from);
+
+            try (Batch cards = new Batch(connection, properties.getBatchSize(),
+                    "INSERT INTO cards (id, encrypted_number, owner_id, expiry_date, status, balance, block_request, "
+                            + "block_requested_at, created_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)")) {
+                for (long user = from; user < to; user++) {
+                    for (int k = 0; k < cardsPerUser; k++) {
+                        writeCard(cards.statement(), plan, user, user * cardsPerUser + k);
+                        cards.add();
+                    }
+                }
+            }
+            counters.cards.addAndGet((to - from) * cardsPerUser);
+
+            if (transactionsPerCard > 0) {
+                try (Batch transactions = new Batch(connection, properties.getBatchSize(),
+                        "INSERT INTO card_transactions (id, from_card_id, to_card_id, amount, timestamp, description) "
+                                + "VALUES (?, ?, ?, ?, ?, ?)")) {
+                    for (long user = from; user < to; user++) {
+                        for (int k = 0; k < cardsPerUser; k++) {
+                            long card = user * cardsPerUser + k;
+                            for (int t = 0; t < transactionsPerCard; t++) {
+                                long transaction = card * transactionsPerCard + t;
+                                SplittableRandom random = random(properties.getSeed(), TRANSACTION_SALT, transaction);
+                                int otherCard = (k + 1 + random.nextInt(cardsPerUser - 1)) % cardsPerUser;
+                                PreparedStatement statement = transactions.statement();
+                                statement.setLong(1, plan.transactionBase + transaction + 1);
+                                statement.setLong(2, plan.cardBase + card + 1);
+                                statement.setLong(3, plan.cardBase + user * cardsPerUser + otherCard + 1);
+                                statement.setBigDecimal(4, BigDecimal.valueOf(100 + random.nextLong(500_000), 2));
+                                statement.setTimestamp(5, Timestamp.valueOf(
+                                        plan.reference.minusSeconds(random.nextLong(3L * 365 * 24 * 3600))));
+                                statement.setString(6, DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+                                transactions.add();
+                            }
+                        }
+                    }
+                }
+                counters.transactions.addAndGet((to - from) * cardsPerUser * transactionsPerCard);
+            }
+
+            if (properties.getRefreshTokensPerUser() > 0) {
+                try (Batch tokens = new Batch(connection, properties.getBatchSize(),
+                        "INSERT INTO refresh_token (token_hash, username, expiry_date, family_id, used_at) "
+                                + "VALUES (?, ?, ?, ?, ?)")) {
+                    for (long user = from; user < to; user++) {
+                        String username = username(plan.userBase + user + 1,
+                                random(properties.getSeed(), USER_SALT, user));
+                        for (int t = 0; t < properties.getRefreshTokensPerUser(); t++) {
+                            writeToken(tokens.statement(), plan, username,
+                                    user * properties.getRefreshTokensPerUser() + t);
+                            tokens.add();
+                        }
+                    }
+                }
+                counters.tokens.addAndGet((to - from) * properties.getRefreshTokensPerUser());
+            }
+            connection.commit();
+        }
+    }
+
+    private void writeCard(PreparedStatement statement, Plan plan, long user, long card) throws SQLException {
+        SplittableRandom random = random(plan.properties.getSeed(), CARD_SALT, card);
+        long id = plan.cardBase + card + 1;
+        LocalDateTime createdAt = plan.reference.minusSeconds(random.nextLong(3L * 365 * 24 * 3600));
+        int kind = random.nextInt(100);
+        CardStatus status = kind < 90 ? CardStatus.ACTIVE : kind < 97 ? CardStatus.BLOCKED : CardStatus.EXPIRED;
+        LocalDate expiryDate = status == CardStatus.EXPIRED
+                ? plan.reference.toLocalDate().minusDays(1 + random.nextInt(365))
+                : createdAt.toLocalDate().plusYears(4);
+        boolean blockRequest = status == CardStatus.ACTIVE && random.nextInt(100) < 2;
+
+        statement.setLong(1, id);
+        statement.setString(2, cardNumber.encrypt(rawCardNumber(id)));
+        statement.setLong(3, plan.userBase + user + 1);
+        statement.setDate(4, Date.valueOf(expiryDate));
+        statement.setString(5, status.name());
+        statement.setBigDecimal(6, BigDecimal.valueOf(random.nextLong(100_000_000), 2));
+        statement.setBoolean(7, blockRequest);
+        if (blockRequest) {
+            statement.setTimestamp(8, Timestamp.valueOf(plan.reference.minusMinutes(random.nextInt(7 * 24 * 60))));
+        } else {
+            statement.setNull(8, Types.TIMESTAMP);
+        }
+        statement.setTimestamp(9, Timestamp.valueOf(createdAt));
+    }
+
+    private void writeToken(PreparedStatement statement, Plan plan, String username, long token) throws SQLException {
+        SplittableRandom random = random(plan.properties.getSeed(), TOKEN_SALT, token);
+        byte[] tokenHash = new byte[32];
+        byte[] familyId = new byte[32];
+        random.nextBytes(tokenHash);
+        random.nextBytes(familyId);
+        // Большая часть токенов уже истекла: такой хвост и разбирает очистка
+        boolean active = random.nextInt(100) < 20;
+        LocalDateTime expiryDate = active
+                ? plan.reference.plusSeconds(1 + random.nextInt(30 * 60))
+                : plan.reference.minusSeconds(1 + random.nextLong(30L * 24 * 3600));
+
+        statement.setBytes(1, tokenHash);
+        statement.setString(2, username);
+        statement.setTimestamp(3, Timestamp.valueOf(expiryDate));
+        statement.setBytes(4, familyId);
+        if (!active && random.nextInt(100) < 10) {
+            statement.setTimestamp(5, Timestamp.valueOf(expiryDate.minusMinutes(1 + random.nextInt(29))));
+        } else {
+            statement.setNull(5, Types.TIMESTAMP);
+        }
+    }
+
+    // id в имени делает его уникальным и при дописывании к уже заполненной базе
+    static String username(long userId, SplittableRandom random) {
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + "."
+                + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + "." + userId;
+    }
+
+    // 16 цифр: BIN, 11 цифр из id и контрольная цифра по Луну
+    static String rawCardNumber(long cardId) {
+        long body = Math.floorMod(cardId * CARD_BODY_MULTIPLIER + 7, CARD_BODY_RANGE);
+        String number = BINS[(int) Math.floorMod(cardId, (long) BINS.length)] + String.format("%011d", body);
+        return number + luhnCheckDigit(number);
+    }
+
+    static int luhnCheckDigit(String number) {
+        int sum = 0;
+        for (int i = number.length() - 1, position = 0; i >= 0; i--, position++) {
+            int digit = number.charAt(i) - '0';
+            if (position % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    static SplittableRandom random(long seed, long salt, long index) {
+        return new SplittableRandom(seed ^ salt ^ (index * 0x9E3779B97F4A7C15L));
+    }
+
+    private static int transactionsPerCard(DataGenProperties properties) {
+        return properties.getCardsPerUser() < 2 ? 0 : properties.getTransactionsPerCard();
+    }
+
+    private long maxId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max == null ? 0 : max;
+    }
+
+    // Иначе следующий обычный INSERT получит id, уже занятый сгенерированной строкой
+    private void restartIdentity(String table, long maxId) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (maxId + 1));
+    }
+
+    private record Plan(DataGenProperties properties, LocalDateTime reference, String passwordHash,
+                        long userBase, long cardBase, long transactionBase) {
+    }
+
+    private static final class Counters {
+        private final AtomicLong users = new AtomicLong();
+        private final AtomicLong cards = new AtomicLong();
+        private final AtomicLong transactions = new AtomicLong();
+        private final AtomicLong tokens = new AtomicLong();
+    }
+
+    // Пакетная вставка с коммитом каждые batchSize строк
+    private static final class Batch implements AutoCloseable {
+
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final int batchSize;
+        private int pending;
+
+        Batch(Connection connection, int batchSize, String sql) throws SQLException {
+            this.connection = connection;
+            this.statement = connection.prepareStatement(sql);
+            this.batchSize = batchSize;
+        }
+
+        PreparedStatement statement() {
+            return statement;
+        }
+
+        void add() throws SQLException {
+            statement.addBatch();
+            if (++pending == batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (pending > 0) {
+                statement.executeBatch();
+                connection.commit();
+                pending = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+            } finally {
+                statement.close();
+            }
+        }
+    }
+}
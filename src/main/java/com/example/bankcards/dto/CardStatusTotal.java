@@ -0,0 +1,13 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+
+public interface CardStatusTotal {
+    CardStatus getStatus();
+
+    long getCards();
+
+    BigDecimal getBalance();
+}
@@ -0,0 +1,38 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class CardSummaryDTO {
+    private BigDecimal totalBalance;
+    private long totalCards;
+    private Map<CardStatus, Long> cardsByStatus;
+
+    public static CardSummaryDTO of(List<CardStatusTotal> totals) {
+        Map<CardStatus, Long> byStatus = new EnumMap<>(CardStatus.class);
+        for (CardStatus status : CardStatus.values()) {
+            byStatus.put(status, 0L);
+        }
+
+        BigDecimal balance = BigDecimal.ZERO;
+        long cards = 0;
+        for (CardStatusTotal total : totals) {
+            byStatus.put(total.getStatus(), total.getCards());
+            balance = balance.add(total.getBalance());
+            cards += total.getCards();
+        }
+        return new CardSummaryDTO(balance, cards, byStatus);
+    }
+}
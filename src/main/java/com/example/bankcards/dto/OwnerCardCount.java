@@ -0,0 +1,7 @@
+package com.example.bankcards.dto;
+
+public interface OwnerCardCount {
+    Long getOwnerId();
+
+    long getCards();
+}
@@ -0,0 +1,27 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class UserDeletionDTO {
+
+    public enum Status {
+        RUNNING, DONE, FAILED
+    }
+
+    private Long userId;
+    private String username;
+    private volatile Status status;
+    private volatile long transactionsDeleted;
+    private volatile long cardsDeleted;
+    private LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.Role;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class UserSearchDTO {
+    private Long id;
+    private String username;
+    private Role role;
+    // Заполняется только при withCards=true
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long cards;
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class UserSearchPageDTO {
+    private List<UserSearchDTO> users;
+    // Значение для параметра after следующей страницы; null, если страница последняя
+    private String next;
+}
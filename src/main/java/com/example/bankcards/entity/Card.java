@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.SQLRestriction;
 import org.springframework.data.annotation.CreatedDate;
 
 import java.math.BigDecimal;
@@ -22,6 +23,8 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 @Entity
 @Table(name = "cards")
 @EntityListeners(AuditingEntityListener.class)
+// Удалённые карты не видны ни в одном запросе по сущности; физически их удаляет CardPurgeService
+@SQLRestriction("deleted_at is null")
 public class Card {
 
     @Id
@@ -48,7 +51,17 @@ public class Card {
     @Column
     private boolean blockRequest = false;
 
+    @Column(name = "block_requested_at")
+    private LocalDateTime blockRequestedAt;
+
     @CreatedDate
     private LocalDateTime createdAt;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
 }
 
@@ -0,0 +1,38 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+
+@Entity
+@Table(name = "jwt_signing_keys")
+public class JwtSigningKey {
+
+    @Id
+    @Column(length = 36)
+    private String kid;
+
+    // Base64 от IV и PKCS#8, зашифрованного AES-GCM ключом из jwt.secret-file
+    @Column(name = "private_key", nullable = false)
+    private String privateKey;
+
+    // Base64 от X.509 SubjectPublicKeyInfo
+    @Column(name = "public_key", nullable = false)
+    private String publicKey;
+
+    // С этого момента ключом подписываются новые токены; предыдущий ключ уходит из оборота через overlap
+    @Column(name = "active_from", nullable = false)
+    private LocalDateTime activeFrom;
+}
@@ -3,29 +3,74 @@ package com.example.bankcards.entity;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
-import lombok.AllArgsConstructor;
+import jakarta.persistence.Transient;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
 
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
 
 @Entity
 @Table(name = "refresh_token")
-public class RefreshToken {
+public class RefreshToken implements Persistable<byte[]> {
 
+    // SHA-256 от токена: сам JWT в БД не хранится
     @Id
-    private String token;
+    @Column(name = "token_hash", length = 32)
+    private byte[] tokenHash;
 
     @Column(nullable = false)
     private String username;
 
     @Column(nullable = false)
     private LocalDateTime expiryDate;
+
+    // Все токены, полученные ротацией из одного входа; при повторном использовании удаляются вместе
+    @Column(name = "family_id", nullable = false, length = 32)
+    private byte[] familyId;
+
+    // Момент ротации; использованный токен хранится до истечения, чтобы распознать его повтор
+    @Column(name = "used_at")
+    private LocalDateTime usedAt;
+
+    // Ключ задаётся приложением, поэтому без флага save() делал бы лишний SELECT перед INSERT
+    @Transient
+    @Getter(lombok.AccessLevel.NONE)
+    @Setter(lombok.AccessLevel.NONE)
+    private boolean persisted;
+
+    public RefreshToken(byte[] tokenHash, String username, LocalDateTime expiryDate) {
+        this(tokenHash, username, expiryDate, tokenHash);
+    }
+
+    public RefreshToken(byte[] tokenHash, String username, LocalDateTime expiryDate, byte[] familyId) {
+        this.tokenHash = tokenHash;
+        this.username = username;
+        this.expiryDate = expiryDate;
+        this.familyId = familyId;
+    }
+
+    @Override
+    public byte[] getId() {
+        return tokenHash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.persisted = true;
+    }
 }
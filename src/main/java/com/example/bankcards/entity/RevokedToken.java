@@ -0,0 +1,31 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+
+@Entity
+@Table(name = "revoked_tokens")
+public class RevokedToken {
+
+    // jti отозванного access-токена
+    @Id
+    @Column(length = 36)
+    private String jti;
+
+    // Срок действия самого токена: после него запись больше не нужна
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class AuthServiceBusyException extends RuntimeException {
+    public AuthServiceBusyException() {
+        super("Сервис авторизации перегружен, повторите попытку позже");
+    }
+}
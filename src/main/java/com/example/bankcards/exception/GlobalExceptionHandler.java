@@ -1,7 +1,9 @@
 package com.example.bankcards.exception;
 
 import com.example.bankcards.entity.ApiError;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -51,6 +53,19 @@ public class GlobalExceptionHandler {
                 .body(apiError);
     }
 
+    @ExceptionHandler(AuthServiceBusyException.class)
+    public ResponseEntity<ApiError> handleAuthServiceBusy(AuthServiceBusyException ex) {
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .message(ex.getMessage())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(apiError);
+    }
+
     //    --------USER_EXCEPTION--------
 
     @ExceptionHandler(UserNotFoundException.class)
@@ -91,6 +106,18 @@ public class GlobalExceptionHandler {
                 .body(apiError);
     }
 
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ApiError> handleOptimisticLock(ObjectOptimisticLockingFailureException ex) {
+        ApiError apiError = ApiError.builder()
+                .status(HttpStatus.CONFLICT)
+                .message("Карта была изменена параллельным запросом, повторите операцию")
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(apiError);
+    }
+
     @ExceptionHandler(NotEnoughMoneyException.class)
     public ResponseEntity<ApiError> handleNotEnoughMoney(NotEnoughMoneyException ex) {
         ApiError apiError = ApiError.builder()
@@ -0,0 +1,331 @@
+package com.example.bankcards.loadtest;
+
+import com.example.bankcards.config.LoadTestProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Нагрузочный тест всего приложения в одной JVM: после старта заполняет встроенную БД
+ * и гоняет по HTTP смесь операций из loadtest.mix в loadtest.concurrency потоков.
+ * Первые loadtest.warmup не учитываются, затем loadtest.duration пишутся все задержки,
+ * и в лог выводятся пропускная способность, p50/p99/p999 и ошибки по каждой операции.
+ * Каждый поток работает от своего пользователя и выбирает операции генератором
+ * со своим seed, так что последовательность запросов повторяется от запуска к запуску.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+@EnableConfigurationProperties(LoadTestProperties.class)
+public class LoadTestRunner implements ApplicationRunner {
+
+    enum Operation {
+        LOGIN, REFRESH, LIST, BALANCE, TRANSFER
+    }
+
+    private final LoadTestProperties properties;
+    private final LoadTestSeeder seeder;
+    private final ObjectMapper objectMapper;
+    private final ConfigurableApplicationContext context;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // Порт известен только после старта Tomcat (server.port=0)
+    private int port;
+
+    public LoadTestRunner(LoadTestProperties properties,
+                          LoadTestSeeder seeder,
+                          ObjectMapper objectMapper,
+                          ConfigurableApplicationContext context) {
+        this.properties = properties;
+        this.seeder = seeder;
+        this.objectMapper = objectMapper;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        Map<String, List<Long>> cardsByUser = seeder.seed(properties);
+        if (cardsByUser.isEmpty()) {
+            throw new IllegalArgumentException("Для нагрузочного теста нужна хотя бы одна карта (loadtest.cards)");
+        }
+        List<String> usernames = cardsByUser.keySet().stream().sorted().toList();
+
+        long now = System.nanoTime();
+        long measureFrom = now + properties.getWarmup().toNanos();
+        long measureUntil = measureFrom + properties.getDuration().toNanos();
+        log.info("Нагрузочный тест: {} потоков, прогрев {}, замер {}",
+                properties.getConcurrency(), properties.getWarmup(), properties.getDuration());
+
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getConcurrency());
+        List<Future<Map<Operation, Samples>>> results = new ArrayList<>();
+        for (int i = 0; i < properties.getConcurrency(); i++) {
+            String username = usernames.get(i % usernames.size());
+            Worker worker = new Worker(username, cardsByUser.get(username), new Random(properties.getSeed() + i));
+            results.add(executor.submit(() -> worker.run(measureFrom, measureUntil)));
+        }
+
+        Map<Operation, Samples> total = new EnumMap<>(Operation.class);
+        for (Future<Map<Operation, Samples>> result : results) {
+            result.get().forEach((operation, samples) ->
+                    total.computeIfAbsent(operation, o -> new Samples()).addAll(samples));
+        }
+        executor.shutdown();
+        report(total, properties.getDuration());
+
+        if (properties.isExitOnFinish()) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private void report(Map<Operation, Samples> total, Duration duration) {
+        double seconds = duration.toMillis() / 1000.0;
+        StringBuilder report = new StringBuilder(String.format("%n%-9s %9s %9s %9s %9s %9s %9s %8s  %s%n",
+                "operation", "count", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors", "by status"));
+        Samples all = new Samples();
+        for (Map.Entry<Operation, Samples> entry : total.entrySet()) {
+            report.append(line(entry.getKey().name().toLowerCase(), entry.getValue(), seconds));
+            all.addAll(entry.getValue());
+        }
+        report.append(line("total", all, seconds));
+        log.info("Результаты нагрузочного теста:{}", report);
+    }
+
+    private static String line(String name, Samples samples, double seconds) {
+        long[] sorted = samples.sorted();
+        double errorRate = samples.count() == 0 ? 0 : 100.0 * samples.errors() / samples.count();
+        return String.format("%-9s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7.2f%%  %s%n",
+                name, samples.count(), samples.count() / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0,
+                errorRate, samples.statuses());
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000.0;
+    }
+
+    private final class Worker {
+
+        private final String username;
+        private final List<Long> cards;
+        private final Random random;
+        private final Operation[] wheel;
+        private String accessToken;
+        private String refreshToken;
+
+        Worker(String username, List<Long> cards, Random random) {
+            this.username = username;
+            this.cards = cards;
+            this.random = random;
+            this.wheel = wheel(properties.getMix(), cards.size() >= 2);
+        }
+
+        Map<Operation, Samples> run(long measureFrom, long measureUntil) {
+            Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+            // Все потоки входят одновременно, и часть логинов отклоняет PasswordHashingGate
+            while (login() != 200 && System.nanoTime() < measureUntil) {
+                try {
+                    Thread.sleep(random.nextInt(100));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return samples;
+                }
+            }
+            long start;
+            while ((start = System.nanoTime()) < measureUntil) {
+                Operation operation = wheel[random.nextInt(wheel.length)];
+                int status = execute(operation);
+                long micros = (System.nanoTime() - start) / 1000;
+                if (start >= measureFrom) {
+                    samples.computeIfAbsent(operation, o -> new Samples()).add(micros, status);
+                }
+            }
+            return samples;
+        }
+
+        private int execute(Operation operation) {
+            return switch (operation) {
+                case LOGIN -> login();
+                case REFRESH -> refresh();
+                case LIST -> send(get("/api/cards?slice=true&page=0&size=20"));
+                case BALANCE -> send(get("/api/cards/" + randomCard() + "/balance"));
+                case TRANSFER -> transfer();
+            };
+        }
+
+        private int login() {
+            return tokens(post("/api/auth/login", Map.of("username", username, "password", properties.getPassword())));
+        }
+
+        private int refresh() {
+            int status = tokens(post("/api/auth/refresh", Map.of("refreshToken", refreshToken)));
+            // Отвергнутый refresh-токен завершил сессию: входим заново
+            if (status != 200) {
+                login();
+            }
+            return status;
+        }
+
+        private int transfer() {
+            long from = randomCard();
+            long to;
+            do {
+                to = randomCard();
+            } while (to == from);
+            return send(post("/api/cards/transaction", Map.of("fromCardId", from, "toCardId", to, "amount", BigDecimal.ONE))
+                    .header("Authorization", "Bearer " + accessToken));
+        }
+
+        private long randomCard() {
+            return cards.get(random.nextInt(cards.size()));
+        }
+
+        private int tokens(HttpRequest.Builder request) {
+            try {
+                HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    JsonNode body = objectMapper.readTree(response.body());
+                    accessToken = body.get("jwtAccess").asText();
+                    refreshToken = body.get("jwtRefresh").asText();
+                }
+                return response.statusCode();
+            } catch (IOException e) {
+                return -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+
+        private int send(HttpRequest.Builder request) {
+            try {
+                return httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                return -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+
+        private HttpRequest.Builder get(String path) {
+            return HttpRequest.newBuilder(uri(path)).header("Authorization", "Bearer " + accessToken).GET();
+        }
+
+        private HttpRequest.Builder post(String path, Map<String, ?> body) {
+            try {
+                return HttpRequest.newBuilder(uri(path))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private URI uri(String path) {
+            return URI.create("http://localhost:" + port + path);
+        }
+    }
+
+    // Операции, повторённые по своему весу; перевод без второй карты невозможен
+    private static Operation[] wheel(LoadTestProperties.Mix mix, boolean canTransfer) {
+        List<Operation> wheel = new ArrayList<>();
+        add(wheel, Operation.LOGIN, mix.getLogin());
+        add(wheel, Operation.REFRESH, mix.getRefresh());
+        add(wheel, Operation.LIST, mix.getList());
+        add(wheel, Operation.BALANCE, mix.getBalance());
+        add(wheel, Operation.TRANSFER, canTransfer ? mix.getTransfer() : 0);
+        if (wheel.isEmpty()) {
+            throw new IllegalArgumentException("В loadtest.mix нет ни одной операции с положительным весом");
+        }
+        return wheel.toArray(Operation[]::new);
+    }
+
+    private static void add(List<Operation> wheel, Operation operation, int weight) {
+        for (int i = 0; i < weight; i++) {
+            wheel.add(operation);
+        }
+    }
+
+    // Задержки в микросекундах и коды ответов (-1 - ошибка соединения)
+    private static final class Samples {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+
+        void add(long micros, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = micros;
+            if (status < 200 || status >= 300) {
+                errors++;
+            }
+            statuses.merge(status, 1, Integer::sum);
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.count; i++) {
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, Math.max(count * 2, count + other.count));
+                }
+                latencies[count++] = other.latencies[i];
+            }
+            errors += other.errors;
+            other.statuses.forEach((status, n) -> statuses.merge(status, n, Integer::sum));
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        int count() {
+            return count;
+        }
+
+        int errors() {
+            return errors;
+        }
+
+        Map<Integer, Integer> statuses() {
+            return statuses;
+        }
+    }
+}
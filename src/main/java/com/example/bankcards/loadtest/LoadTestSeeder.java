@@ -0,0 +1,113 @@
+package com.example.bankcards.loadtest;
+
+import com.example.bankcards.config.LoadTestProperties;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.util.CardNumber;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Заполняет пустую встроенную БД пользователями и картами для нагрузочного теста.
+ * У всех пользователей один пароль, поэтому BCrypt считается один раз.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+public class LoadTestSeeder {
+
+    static final String USERNAME_PREFIX = "load-user-";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000.00");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final CardNumber cardNumber;
+
+    public LoadTestSeeder(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder, CardNumber cardNumber) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.cardNumber = cardNumber;
+    }
+
+    // Возвращает id карт каждого пользователя по имени
+    public Map<String, List<Long>> seed(LoadTestProperties properties) {
+        long start = System.nanoTime();
+        String hash = passwordEncoder.encode(properties.getPassword());
+
+        List<Object[]> users = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < properties.getUsers(); i++) {
+            users.add(new Object[]{USERNAME_PREFIX + i, hash, Role.USER.name()});
+            if (users.size() == BATCH_SIZE) {
+                insertUsers(users);
+            }
+        }
+        insertUsers(users);
+
+        Map<Long, String> usernames = new HashMap<>();
+        jdbcTemplate.query("SELECT id, username FROM users WHERE username LIKE ?",
+                rs -> {
+                    usernames.put(rs.getLong(1), rs.getString(2));
+                },
+                USERNAME_PREFIX + "%");
+        List<Long> userIds = usernames.keySet().stream().sorted().toList();
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Date expiry = Date.valueOf(LocalDate.now().plusYears(3));
+        List<Object[]> cards = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < properties.getCards(); i++) {
+            cards.add(new Object[]{
+                    cardNumber.encrypt(String.format("4000%012d", i)),
+                    userIds.get(i % userIds.size()),
+                    expiry, CardStatus.ACTIVE.name(), INITIAL_BALANCE, now});
+            if (cards.size() == BATCH_SIZE) {
+                insertCards(cards);
+            }
+        }
+        insertCards(cards);
+
+        Map<String, List<Long>> cardsByUser = new HashMap<>();
+        jdbcTemplate.query("SELECT id, owner_id FROM cards ORDER BY id",
+                rs -> {
+                    String username = usernames.get(rs.getLong(2));
+                    if (username != null) {
+                        cardsByUser.computeIfAbsent(username, u -> new ArrayList<>()).add(rs.getLong(1));
+                    }
+                });
+
+        log.info("Создано {} пользователей и {} карт за {} мс", properties.getUsers(), properties.getCards(),
+                (System.nanoTime() - start) / 1_000_000);
+        return cardsByUser;
+    }
+
+    private void insertUsers(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, encrypted_password, role) VALUES (?, ?, ?)", batch);
+        batch.clear();
+    }
+
+    private void insertCards(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO cards (encrypted_number, owner_id, expiry_date, status, balance, "
+                + "block_request, created_at, version) VALUES (?, ?, ?, ?, ?, false, ?, 0)", batch);
+        batch.clear();
+    }
+}
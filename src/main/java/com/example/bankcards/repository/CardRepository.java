@@ -1,16 +1,87 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardStatusTotal;
+import com.example.bankcards.dto.OwnerCardCount;
 import com.example.bankcards.entity.Card;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CardRepository extends JpaRepository<Card, Long> {
     Page<Card> findByOwnerUsername(String username, String number, Pageable pageable);
 
+    // Slice: без count-запроса, Spring Data выбирает pageSize + 1 строк
+    @EntityGraph(attributePaths = "owner")
+    Slice<Card> findSliceByOwnerUsername(String username, Pageable pageable);
+
+    @EntityGraph(attributePaths = "owner")
+    Slice<Card> findSliceBy(Pageable pageable);
+
     Optional<Card> findByIdAndOwnerUsername(Long id, String username);
-}
\ No newline at end of file
+
+    @Query("select c.version from Card c where c.id = :id and c.owner.username = :username")
+    Optional<Long> findVersionByIdAndOwnerUsername(@Param("id") Long id, @Param("username") String username);
+
+    @Query("select c.status as status, count(c) as cards, coalesce(sum(c.balance), 0) as balance " +
+            "from Card c where c.owner.username = :username group by c.status")
+    List<CardStatusTotal> summarizeByOwnerUsername(@Param("username") String username);
+
+    @Query(value = "select c from Card c join fetch c.owner " +
+            "where c.blockRequest = true and c.status <> com.example.bankcards.entity.CardStatus.BLOCKED " +
+            "order by c.blockRequestedAt, c.id",
+            countQuery = "select count(c) from Card c " +
+                    "where c.blockRequest = true and c.status <> com.example.bankcards.entity.CardStatus.BLOCKED")
+    Page<Card> findPendingBlockRequests(Pageable pageable);
+
+    // SKIP LOCKED: параллельные админы забирают разные заявки, не дожидаясь друг друга
+    @Query(value = "SELECT * FROM cards " +
+            "WHERE block_request AND status <> 'BLOCKED' AND deleted_at IS NULL " +
+            "ORDER BY block_requested_at, id " +
+            "LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Card> lockNextPendingBlockRequests(@Param("limit") int limit);
+
+    long countByOwnerId(Long ownerId);
+
+    @Query("select c.owner.username from Card c where c.id = :id")
+    Optional<String> findOwnerUsernameById(@Param("id") Long id);
+
+    // Мягкое удаление без загрузки сущности; версия растёт, чтобы старые ETag перестали совпадать
+    @Transactional
+    @Modifying
+    @Query("update Card c set c.deletedAt = :deletedAt, c.version = c.version + 1 " +
+            "where c.id = :id and c.deletedAt is null")
+    int softDeleteById(@Param("id") Long id, @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Query("select c.owner.id as ownerId, count(c) as cards from Card c " +
+            "where c.owner.id in :ownerIds group by c.owner.id")
+    List<OwnerCardCount> countByOwnerIds(@Param("ownerIds") Collection<Long> ownerIds);
+
+    // Переводы по этим картам должны быть удалены раньше, иначе сработает внешний ключ
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM cards WHERE id IN " +
+            "(SELECT id FROM cards WHERE owner_id = :ownerId LIMIT :limit)",
+            nativeQuery = true)
+    int deleteBatchByOwnerId(@Param("ownerId") Long ownerId, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM cards WHERE id IN " +
+            "(SELECT id FROM cards WHERE deleted_at < :before LIMIT :limit)",
+            nativeQuery = true)
+    int purgeDeletedBatch(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
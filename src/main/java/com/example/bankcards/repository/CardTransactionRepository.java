@@ -1,9 +1,55 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.CardTransaction;
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+
 @Repository
 public interface CardTransactionRepository extends JpaRepository<CardTransaction, Long> {
+
+    // Удаляет не больше limit переводов, затрагивающих карты пользователя; каждая пачка - отдельная транзакция
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM card_transactions
+            WHERE id IN (SELECT t.id FROM card_transactions t
+                         WHERE t.from_card_id IN (SELECT c.id FROM cards c WHERE c.owner_id = :ownerId)
+                            OR t.to_card_id IN (SELECT c.id FROM cards c WHERE c.owner_id = :ownerId)
+                         LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteBatchByOwnerId(@Param("ownerId") Long ownerId, @Param("limit") int limit);
+
+    // Считает не дальше limit строк в каждом направлении: для выбора синхронного или фонового удаления
+    // точное число не нужно. Переводы между своими картами попадают только в исходящие
+    @Query(value = """
+            SELECT count(*) FROM ((SELECT 1 FROM card_transactions t
+                                   JOIN cards c ON c.id = t.from_card_id
+                                   WHERE c.owner_id = :ownerId
+                                   LIMIT :limit)
+                                  UNION ALL
+                                  (SELECT 1 FROM card_transactions t
+                                   JOIN cards c ON c.id = t.to_card_id
+                                   JOIN cards f ON f.id = t.from_card_id
+                                   WHERE c.owner_id = :ownerId AND f.owner_id <> :ownerId
+                                   LIMIT :limit)) limited
+            """, nativeQuery = true)
+    long countByOwnerIdUpTo(@Param("ownerId") Long ownerId, @Param("limit") int limit);
+
+    // Переводы по картам, удалённым раньше before; без них карту нельзя удалить физически
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM card_transactions
+            WHERE id IN (SELECT t.id FROM card_transactions t
+                         WHERE t.from_card_id IN (SELECT c.id FROM cards c WHERE c.deleted_at < :before)
+                            OR t.to_card_id IN (SELECT c.id FROM cards c WHERE c.deleted_at < :before)
+                         LIMIT :limit)
+            """, nativeQuery = true)
+    int purgeForDeletedCardsBatch(@Param("before") LocalDateTime before, @Param("limit") int limit);
 }
@@ -0,0 +1,30 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.JwtSigningKey;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+
+    // Вставляет ключ, только если ни один не вступает в силу позже after: узел, проигравший гонку
+    // ротации, не добавит ещё один. При точном совпадении лишний ключ просто публикуется и не мешает
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO jwt_signing_keys (kid, private_key, public_key, active_from)
+            SELECT :kid, :privateKey, :publicKey, :activeFrom
+            WHERE NOT EXISTS (SELECT 1 FROM jwt_signing_keys WHERE active_from > :after)
+            """, nativeQuery = true)
+    int insertIfNoneActiveAfter(@Param("kid") String kid,
+                                @Param("privateKey") String privateKey,
+                                @Param("publicKey") String publicKey,
+                                @Param("activeFrom") LocalDateTime activeFrom,
+                                @Param("after") LocalDateTime after);
+}
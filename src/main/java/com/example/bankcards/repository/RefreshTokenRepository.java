@@ -3,14 +3,62 @@ package com.example.bankcards.repository;
 import com.example.bankcards.entity.RefreshToken;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
-public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
-    Optional<RefreshToken> findByToken(String token);
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, byte[]> {
 
     @Transactional
-    void deleteByToken(String token);
+    @Modifying
+    @Query("delete from RefreshToken r where r.tokenHash = :tokenHash")
+    int deleteByTokenHash(@Param("tokenHash") byte[] tokenHash);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken r where r.username = :username")
+    int deleteByUsername(@Param("username") String username);
+
+    // Ротация: выигрывает только первый запрос, остальные получат 0 и будут считаться повтором
+    @Transactional
+    @Modifying
+    @Query("update RefreshToken r set r.usedAt = :usedAt where r.tokenHash = :tokenHash and r.usedAt is null")
+    int markUsed(@Param("tokenHash") byte[] tokenHash, @Param("usedAt") LocalDateTime usedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken r where r.familyId = :familyId")
+    int deleteByFamilyId(@Param("familyId") byte[] familyId);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            delete from RefreshToken r
+            where r.familyId = (select t.familyId from RefreshToken t where t.tokenHash = :tokenHash)
+            """)
+    int deleteFamilyByTokenHash(@Param("tokenHash") byte[] tokenHash);
+
+    @Query("""
+            select r.familyId from RefreshToken r
+            where r.username = :username and r.usedAt is null and r.expiryDate > :now
+            order by r.expiryDate desc
+            """)
+    List<byte[]> findActiveFamilies(@Param("username") String username, @Param("now") LocalDateTime now);
+
+    // Удаляет не больше limit истёкших токенов; строки, которые уже чистит другой узел, пропускаются
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM refresh_token
+            WHERE token_hash IN (SELECT token_hash FROM refresh_token
+                                 WHERE expiry_date < :now
+                                 LIMIT :limit
+                                 FOR UPDATE SKIP LOCKED)
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
 }
@@ -1,12 +1,51 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    Slice<User> findSliceBy(Pageable pageable);
+
+    // Keyset-пагинация: продолжение с последнего имени предыдущей страницы вместо OFFSET.
+    // Выражение username COLLATE "C" совпадает с индексом idx_users_username_c
+    @Query(value = """
+            SELECT * FROM users
+            WHERE username COLLATE "C" LIKE :pattern ESCAPE '\\'
+              AND username COLLATE "C" > :after
+            ORDER BY username COLLATE "C"
+            """, nativeQuery = true)
+    List<User> searchByUsernamePrefix(@Param("pattern") String pattern,
+                                      @Param("after") String after,
+                                      Pageable pageable);
+
+    // Один запрос вместо проверки и вставки; 0 - имя уже занято (в том числе параллельной регистрацией)
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO users (username, encrypted_password, role)
+            VALUES (:username, :encryptedPassword, :role)
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("username") String username,
+                       @Param("encryptedPassword") String encryptedPassword,
+                       @Param("role") String role);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.encryptedPassword = :encryptedPassword where u.username = :username")
+    int updateEncryptedPassword(@Param("username") String username,
+                                @Param("encryptedPassword") String encryptedPassword);
 }
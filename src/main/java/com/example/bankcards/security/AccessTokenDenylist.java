@@ -0,0 +1,163 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Отозванные access-токены (по jti). Почти все проверяемые токены не отозваны,
+ * поэтому сначала смотрится фильтр Блума: если хоть один бит не выставлен, токен
+ * точно не отозван и проверка заканчивается без аллокаций и обращения к БД.
+ * Ложные срабатывания фильтра отсекает точное множество.
+ * Источник правды - таблица revoked_tokens: при старте и затем раз в refresh-interval
+ * фильтр пересобирается из неё, заодно забирая отзывы с других узлов и выбрасывая
+ * записи, чьи токены уже истекли (из фильтра Блума нельзя удалять по одной).
+ */
+@Slf4j
+@Component
+public class AccessTokenDenylist {
+
+    private static final int HASHES = 7;
+    // ~9.6 бита на элемент при 7 хэшах дают около 1% ложных срабатываний
+    private static final int BITS_PER_ENTRY = 10;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final int expectedSize;
+    private volatile Snapshot snapshot;
+
+    public AccessTokenDenylist(RevokedTokenRepository revokedTokenRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${revoked-tokens.expected-size:100000}") int expectedSize) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedSize = expectedSize;
+        this.snapshot = load();
+        meterRegistry.gauge("revoked_tokens.size", this, denylist -> denylist.snapshot.exact.size());
+    }
+
+    public void revoke(String jti, Date expiresAt) {
+        // Истёкший токен и так не пройдёт проверку
+        if (jti == null || expiresAt == null || expiresAt.getTime() <= System.currentTimeMillis()) {
+            return;
+        }
+        revokedTokenRepository.insertIfAbsent(jti, LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()));
+
+        // Если фильтр пересобрали параллельно, запись добавляется и в новый
+        Snapshot current;
+        do {
+            current = snapshot;
+            current.add(jti, expiresAt.getTime());
+        } while (current != snapshot);
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        Snapshot current = snapshot;
+        if (!current.mightContain(jti)) {
+            return false;
+        }
+        Long expiresAt = current.exact.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    @Scheduled(initialDelayString = "${revoked-tokens.refresh-interval:PT1M}",
+            fixedDelayString = "${revoked-tokens.refresh-interval:PT1M}")
+    public void refresh() {
+        int purged = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        Snapshot previous = snapshot;
+        Snapshot next = load();
+        copyActive(previous, next);
+        snapshot = next;
+        // Отзывы, попавшие в старый фильтр между загрузкой и подменой
+        copyActive(previous, next);
+
+        if (purged > 0) {
+            log.info("Удалено {} истёкших отозванных токенов", purged);
+        }
+    }
+
+    private Snapshot load() {
+        var active = revokedTokenRepository.findAllByExpiresAtAfter(LocalDateTime.now());
+        Snapshot next = new Snapshot(Math.max(expectedSize, active.size() * 2));
+        for (RevokedToken token : active) {
+            next.add(token.getJti(), token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        return next;
+    }
+
+    private static void copyActive(Snapshot from, Snapshot to) {
+        long now = System.currentTimeMillis();
+        from.exact.forEach((jti, expiresAt) -> {
+            if (expiresAt > now) {
+                to.add(jti, expiresAt);
+            }
+        });
+    }
+
+    private static final class Snapshot {
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final Map<String, Long> exact = new ConcurrentHashMap<>();
+
+        Snapshot(int capacity) {
+            int words = (int) Math.max(1, ((long) capacity * BITS_PER_ENTRY + 63) / 64);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = words * 64L;
+        }
+
+        void add(String jti, long expiresAt) {
+            exact.put(jti, expiresAt);
+            long hash = hash(jti);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = bits.get(word);
+                } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String jti) {
+            long hash = hash(jti);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // FNV-1a по символам строки с финальным перемешиванием: без getBytes и лишних объектов
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -1,31 +1,53 @@
 package com.example.bankcards.security;
 
-import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 
-        User user = userRepository.findByUsername(username)
+        UserDetailsCache.Snapshot user = userDetailsCache.get(username, this::load)
                 .orElseThrow(() -> {
                     return new UsernameNotFoundException("Юзер не найден");
                 });
 
         return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getEncryptedPassword())
-                .roles(String.valueOf(user.getRole()))
+                .username(user.username())
+                .password(user.encryptedPassword())
+                .roles(String.valueOf(user.role()))
+                .build();
+    }
+
+    // Вызывается DaoAuthenticationProvider после успешного входа, если хэш создан с устаревшей стоимостью
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updateEncryptedPassword(user.getUsername(), newPassword);
+        userDetailsCache.evict(user.getUsername());
+
+        return org.springframework.security.core.userdetails.User.withUserDetails(user)
+                .password(newPassword)
                 .build();
     }
+
+    private Optional<UserDetailsCache.Snapshot> load(String username) {
+        return userRepository.findByUsername(username)
+                .map(user -> new UserDetailsCache.Snapshot(
+                        user.getUsername(), user.getEncryptedPassword(), user.getRole()));
+    }
 }
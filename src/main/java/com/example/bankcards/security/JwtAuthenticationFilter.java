@@ -2,13 +2,18 @@ package com.example.bankcards.security;
 
 
 import com.example.bankcards.service.JwtService;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -16,16 +21,33 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
+    private final RevokedUserRegistry revokedUserRegistry;
+    private final AccessTokenDenylist accessTokenDenylist;
+    // В stateless-режиме пользователь и роль берутся из проверенного токена, без запроса в БД
+    private final boolean stateless;
+    private final Timer verifyValid;
+    private final Timer verifyInvalid;
 
-    public JwtAuthenticationFilter(JwtService jwtService, CustomUserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService,
+                                   CustomUserDetailsService userDetailsService,
+                                   RevokedUserRegistry revokedUserRegistry,
+                                   AccessTokenDenylist accessTokenDenylist,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${jwt.stateless.enabled:false}") boolean stateless) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.revokedUserRegistry = revokedUserRegistry;
+        this.accessTokenDenylist = accessTokenDenylist;
+        this.stateless = stateless;
+        this.verifyValid = Timer.builder("jwt.verify").tag("result", "valid").register(meterRegistry);
+        this.verifyInvalid = Timer.builder("jwt.verify").tag("result", "invalid").register(meterRegistry);
     }
 
     @Override
@@ -34,38 +56,65 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
 
         String authHeader = request.getHeader("Authorization");
-        String username = null;
-        String token = null;
+        Claims claims = null;
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            token = authHeader.substring(7);
+            String token = authHeader.substring(7);
+            long start = System.nanoTime();
             try {
-                username = jwtService.extractUsername(token);
+                claims = jwtService.parseClaims(token);
+                verifyValid.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             } catch (JwtException | IllegalArgumentException e) {
+                verifyInvalid.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                return;
+            }
+            // Refresh-токен и токен, отозванный при logout, не действуют так же, как истёкший
+            if (!jwtService.isAccessToken(claims) || accessTokenDenylist.isRevoked(claims.getId())) {
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 return;
             }
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            try {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        if (claims != null && claims.getSubject() != null
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            if (stateless) {
+                String role = claims.get("role", String.class);
+                if (role == null) {
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    return;
+                }
+                // Удалённый пользователь получает тот же ответ, что и при поиске в БД
+                if (revokedUserRegistry.isRevoked(claims.getSubject(), claims.getIssuedAt())) {
+                    response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                    return;
+                }
+                authenticate(User.withUsername(claims.getSubject())
+                        .password("")
+                        .roles(role)
+                        .build(), request);
+            } else {
+                try {
+                    UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
 
-                if (jwtService.isTokenValid(token, userDetails)) {
-                    UsernamePasswordAuthenticationToken authToken =
-                            new UsernamePasswordAuthenticationToken(
-                                    userDetails, null, userDetails.getAuthorities());
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                    if (jwtService.isTokenValid(claims, userDetails)) {
+                        authenticate(userDetails, request);
+                    }
+                } catch (UsernameNotFoundException e) {
+                    response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                    return;
                 }
-            } catch (UsernameNotFoundException e) {
-                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                return;
             }
         }
 
         filterChain.doFilter(request, response);
     }
-}
-
 
+    private void authenticate(UserDetails userDetails, HttpServletRequest request) {
+        UsernamePasswordAuthenticationToken authToken =
+                new UsernamePasswordAuthenticationToken(
+                        userDetails, null, userDetails.getAuthorities());
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.AuthServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Ограничивает число одновременных вычислений BCrypt при входе и регистрации.
+ * Без ограничения волна логинов занимает все потоки Tomcat, и остальные запросы
+ * (переводы, баланс) ждут в очереди. Запрос, не получивший разрешение за
+ * acquire-timeout, сразу получает 503.
+ * На виртуальных потоках потоков-носителей столько же, сколько процессоров, и BCrypt
+ * на всех разрешениях занял бы их целиком, поэтому по умолчанию разрешений вдвое меньше.
+ * Время самого хэширования (без ожидания разрешения) пишется в password_hashing.duration
+ * с тегом operation.
+ */
+@Component
+public class PasswordHashingGate {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutNanos;
+    private final Counter rejected;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public PasswordHashingGate(@Value("${security.password-hashing.max-concurrent:0}") int maxConcurrent,
+                               @Value("${security.password-hashing.acquire-timeout:200ms}") Duration acquireTimeout,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                               MeterRegistry meterRegistry) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        boolean onVirtualThreads = virtualThreads && Runtime.version().feature() >= 21;
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent
+                : onVirtualThreads ? Math.max(1, processors / 2) : processors;
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+
+        Gauge.builder("password_hashing.active", permits, p -> this.maxConcurrent - p.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("password_hashing.queued", permits, Semaphore::getQueueLength)
+                .register(meterRegistry);
+        this.rejected = meterRegistry.counter("password_hashing.rejected");
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T run(String operation, Supplier<T> task) {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new AuthServiceBusyException();
+        }
+        Timer timer = timers.computeIfAbsent(operation, op -> Timer.builder("password_hashing.duration")
+                .tag("operation", op)
+                .register(meterRegistry));
+        long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.RateLimitProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоит в цепочке Spring Security сразу после JwtAuthenticationFilter, чтобы аутентифицированные
+ * запросы лимитировались по пользователю, а анонимные (логин) - по IP.
+ * Не объявлен как @Component: иначе Spring Boot зарегистрировал бы его ещё и в контейнере,
+ * до аутентификации.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final List<Rule> rules;
+
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.rules = properties.getRoutes().stream()
+                .map(Rule::new)
+                .toList();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+
+        for (Rule rule : rules) {
+            if (rule.matcher.matches(request)) {
+                long wait = rateLimiter.tryAcquire(rule.keyPrefix + clientKey(request),
+                        rule.intervalNanos, rule.burstNanos, System.nanoTime());
+                if (wait > 0) {
+                    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                    response.setHeader(HttpHeaders.RETRY_AFTER,
+                            String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999))));
+                    return;
+                }
+                break;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "u:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static final class Rule {
+        private final AntPathRequestMatcher matcher;
+        private final String keyPrefix;
+        private final long intervalNanos;
+        private final long burstNanos;
+
+        private Rule(RateLimitProperties.Route route) {
+            this.matcher = new AntPathRequestMatcher(route.getPath(), route.getMethod());
+            this.keyPrefix = (route.getMethod() == null ? "*" : route.getMethod()) + " " + route.getPath() + "|";
+            this.intervalNanos = route.getPeriod().toNanos() / route.getCapacity();
+            this.burstNanos = route.getPeriod().toNanos() - intervalNanos;
+        }
+    }
+}
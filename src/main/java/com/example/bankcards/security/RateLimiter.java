@@ -0,0 +1,78 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.RateLimitProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Лимиты запросов по алгоритму GCRA: состояние ключа - одно AtomicLong с теоретическим
+ * временем прихода следующего запроса, обновляется через CAS без блокировок.
+ * Ключ, у которого это время уже в прошлом, эквивалентен полному ведру, поэтому
+ * его можно выбросить без изменения поведения - это делает плановая очистка.
+ * Число ключей ограничено max-keys: при переполнении Caffeine вытесняет редко используемые
+ * ключи, так что поток новых ключей не сбрасывает лимиты активных клиентов и не отключает лимиты.
+ */
+@Component
+public class RateLimiter {
+
+    private final Cache<String, AtomicLong> buckets;
+    private final Counter rejected;
+
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.rejected = meterRegistry.counter("rate_limit.rejected");
+        Counter evicted = meterRegistry.counter("rate_limit.evicted");
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxKeys())
+                // Обслуживание кэша идёт в вызывающем потоке небольшими порциями, без отдельного пула
+                .executor(Runnable::run)
+                .evictionListener((String key, AtomicLong tat, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        evicted.increment();
+                    }
+                })
+                .build();
+        meterRegistry.gauge("rate_limit.keys", buckets, Cache::estimatedSize);
+    }
+
+    /**
+     * @return 0, если запрос разрешён, иначе сколько наносекунд ждать до следующей попытки
+     */
+    public long tryAcquire(String key, long intervalNanos, long burstNanos, long now) {
+        AtomicLong tat = buckets.get(key, k -> new AtomicLong(now));
+
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long wait = next - now - burstNanos - intervalNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval:PT1M}")
+    public void sweep() {
+        sweep(System.nanoTime());
+    }
+
+    void sweep(long now) {
+        buckets.asMap().values().removeIf(tat -> tat.get() - now <= 0);
+        buckets.cleanUp();
+    }
+
+    long size() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * Пользователи, чьи access-токены больше нельзя принимать без обращения к БД
+ * (удалённые, понижённые в правах). Запись хранится не дольше срока жизни
+ * access-токена: выпущенные до отзыва токены к этому моменту уже истекут.
+ */
+@Component
+public class RevokedUserRegistry {
+
+    private final Cache<String, Long> revokedAt;
+
+    public RevokedUserRegistry(@Value("${jwt.expiration.access}") long accessTtlMillis,
+                               @Value("${jwt.stateless.revocation-max-size:100000}") long maxSize) {
+        this.revokedAt = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(accessTtlMillis))
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public void revoke(String username) {
+        revokedAt.put(username, System.currentTimeMillis());
+    }
+
+    // iat в JWT хранится с точностью до секунды, поэтому токен, выпущенный в ту же секунду, тоже считается отозванным
+    public boolean isRevoked(String username, Date issuedAt) {
+        Long revoked = revokedAt.getIfPresent(username);
+        if (revoked == null) {
+            return false;
+        }
+        return issuedAt == null || issuedAt.getTime() / 1000 <= revoked / 1000;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.util.CacheLoading;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Кэш пользователей для CustomUserDetailsService. При ttl = 0 кэш выключен.
+ * Хранятся только неизменяемые снимки: ProviderManager после логина стирает пароль
+ * в возвращённом UserDetails, поэтому на каждый вызов собирается новый объект.
+ * Неизвестные имена кэшируются отдельно (пустой Optional) с более коротким ttl,
+ * чтобы перебор несуществующих пользователей не доходил до БД.
+ */
+@Component
+public class UserDetailsCache {
+
+    public record Snapshot(String username, String encryptedPassword, Role role) {
+    }
+
+    private final AsyncCache<String, Optional<Snapshot>> cache;
+
+    public UserDetailsCache(@Value("${users.details.cache-ttl:0s}") Duration ttl,
+                            @Value("${users.details.negative-cache-ttl:0s}") Duration negativeTtl,
+                            @Value("${users.details.cache-max-size:10000}") long maxSize,
+                            MeterRegistry meterRegistry) {
+        if (ttl.isZero()) {
+            this.cache = null;
+            return;
+        }
+        this.cache = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, Optional<Snapshot>>() {
+                    @Override
+                    public long expireAfterCreate(String key, Optional<Snapshot> value, long currentTime) {
+                        return (value.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Optional<Snapshot> value,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Optional<Snapshot> value,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .maximumSize(maxSize)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users.details");
+    }
+
+    public Optional<Snapshot> get(String username, Function<String, Optional<Snapshot>> loader) {
+        if (cache == null) {
+            return loader.apply(username);
+        }
+        return CacheLoading.get(cache, username, loader);
+    }
+
+    public void evict(String username) {
+        if (cache == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.synchronous().invalidate(username);
+                }
+            });
+        } else {
+            cache.synchronous().invalidate(username);
+        }
+    }
+}
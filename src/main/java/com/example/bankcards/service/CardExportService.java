@@ -0,0 +1,100 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.CardNumber;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@Service
+public class CardExportService {
+
+    private static final Set<String> SORTABLE = Set.of("id", "createdAt", "expiryDate", "status", "balance");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter cardWriter;
+    private final CardNumber cardNumber;
+    private final int fetchSize;
+
+    public CardExportService(ObjectMapper objectMapper,
+                             CardNumber cardNumber,
+                             @Value("${cards.export.fetch-size:500}") int fetchSize) {
+        this.objectMapper = objectMapper;
+        this.cardWriter = objectMapper.writerFor(CardDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.cardNumber = cardNumber;
+        this.fetchSize = fetchSize;
+    }
+
+    // Карты читаются курсором и пишутся в ответ по одной; контекст персистентности
+    // очищается каждые fetchSize строк, так что память не зависит от размера страницы
+    @Transactional(readOnly = true)
+    public void writeAllCards(Pageable pageable, OutputStream out) throws IOException {
+        var query = entityManager.createQuery(
+                        "select c from Card c join fetch c.owner order by " + orderClause(pageable.getSort()),
+                        Card.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset())
+                    .setMaxResults(pageable.getPageSize());
+        }
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+             Stream<Card> cards = query.getResultStream()) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            if (pageable.isPaged()) {
+                generator.writeNumberField("page", pageable.getPageNumber());
+                generator.writeNumberField("size", pageable.getPageSize());
+            }
+            generator.writeArrayFieldStart("content");
+
+            int written = 0;
+            Iterator<Card> iterator = cards.iterator();
+            while (iterator.hasNext()) {
+                Card card = iterator.next();
+                cardWriter.writeValue(generator, new CardDTO(card, cardNumber.getMasked(card.getEncryptedNumber())));
+                if (++written % fetchSize == 0) {
+                    entityManager.clear();
+                    generator.flush();
+                }
+            }
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private String orderClause(Sort sort) {
+        StringBuilder clause = new StringBuilder();
+        for (Sort.Order order : sort) {
+            if (!SORTABLE.contains(order.getProperty())) {
+                continue;
+            }
+            clause.append("c.").append(order.getProperty())
+                    .append(order.isAscending() ? " asc" : " desc")
+                    .append(", ");
+        }
+        return clause.append("c.id").toString();
+    }
+}
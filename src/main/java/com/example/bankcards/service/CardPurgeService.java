@@ -0,0 +1,72 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Физическое удаление карт, помеченных удалёнными больше retention назад, вместе с переводами по ним.
+ * Запускается по cron в часы низкой нагрузки; удаляет пачками по batch-size строк,
+ * каждая пачка в своей транзакции, и не больше max-batches пачек за запуск.
+ */
+@Slf4j
+@Service
+public class CardPurgeService {
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardTransactionRepository transactionRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cards.purge.retention:P30D}")
+    private Duration retention;
+
+    @Value("${cards.purge.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${cards.purge.max-batches:100}")
+    private int maxBatches;
+
+    @Scheduled(cron = "${cards.purge.cron:0 0 3 * * *}")
+    public int purgeDeleted() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        int batches = 0;
+
+        int transactions = 0;
+        int deleted = batchSize;
+        while (deleted == batchSize && batches < maxBatches) {
+            deleted = transactionRepository.purgeForDeletedCardsBatch(before, batchSize);
+            transactions += deleted;
+            batches++;
+        }
+
+        // Пока остались переводы, карты удалять нельзя: продолжит следующий запуск
+        int cards = 0;
+        if (deleted < batchSize) {
+            deleted = batchSize;
+            while (deleted == batchSize && batches < maxBatches) {
+                deleted = cardRepository.purgeDeletedBatch(before, batchSize);
+                cards += deleted;
+                batches++;
+            }
+        }
+
+        if (cards > 0 || transactions > 0) {
+            log.info("Удалено помеченных карт: {}, переводов по ним: {}", cards, transactions);
+        }
+        meterRegistry.counter("cards.purged").increment(cards);
+        return cards;
+    }
+}
@@ -3,6 +3,7 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardCreateDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSummaryDTO;
 import com.example.bankcards.dto.TransactionRequestDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
@@ -16,33 +17,50 @@ import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.CardTransactionRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.CardNumber;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 @Service
 public class CardService {
 
+    private static final int MAX_BLOCK_REQUESTS_PER_CALL = 100;
+
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final CardTransactionRepository transactionRepository;
     private CardNumber cardNumber;
+    private final CardSummaryCache summaryCache;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
 
     public CardService(CardRepository cardRepository,
                        UserRepository userRepository,
                        CardTransactionRepository transactionRepository,
-                       CardNumber cardNumber) {
+                       CardNumber cardNumber,
+                       CardSummaryCache summaryCache,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry) {
         this.cardRepository = cardRepository;
         this.userRepository = userRepository;
         this.transactionRepository = transactionRepository;
         this.cardNumber = cardNumber;
+        this.summaryCache = summaryCache;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
     }
 
 
@@ -53,14 +71,38 @@ public class CardService {
                 .map(c -> new CardDTO(c, cardNumber.getMasked(c.getEncryptedNumber())));
     }
 
+    public Slice<CardDTO> getMyCardsSlice(String username, Pageable pageable) {
+        return cardRepository.findSliceByOwnerUsername(username, pageable)
+                .map(c -> new CardDTO(c, cardNumber.getMasked(c.getEncryptedNumber())));
+    }
+
     public CardDTO getMyCard(String username, Long cardId) {
         Card card = cardRepository.findByIdAndOwnerUsername(cardId, username)
                 .orElseThrow(() -> new CardNotFoundException(""));
         return new CardDTO(card, cardNumber.getMasked(card.getEncryptedNumber()));
     }
 
-    @Transactional
+    public long getCardVersion(String username, Long cardId) {
+        return cardRepository.findVersionByIdAndOwnerUsername(cardId, username)
+                .orElseThrow(() -> new CardNotFoundException(""));
+    }
+
+    // Таймер снаружи транзакции: конфликт версий всплывает только при коммите
     public void transaction(String username, TransactionRequestDTO dto) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            transactionTemplate.executeWithoutResult(status -> transfer(username, dto));
+            outcome = "ok";
+        } catch (RuntimeException e) {
+            outcome = transactionOutcome(e);
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("cards.transaction", "outcome", outcome));
+        }
+    }
+
+    private void transfer(String username, TransactionRequestDTO dto) {
         Card from = cardRepository.findByIdAndOwnerUsername(dto.getFromCardId(), username)
                 .orElseThrow(() -> new CardNotFoundException("Карта списания не найдена"));
 
@@ -93,6 +135,20 @@ public class CardService {
         transaction.setDescription(dto.getDescription());
 
         transactionRepository.save(transaction);
+        summaryCache.evict(username);
+    }
+
+    private static String transactionOutcome(RuntimeException e) {
+        if (e instanceof NotEnoughMoneyException) {
+            return "insufficient_funds";
+        }
+        if (e instanceof CardNotFoundException) {
+            return "not_found";
+        }
+        if (e instanceof ConflictErrorException || e instanceof ConcurrencyFailureException) {
+            return "conflict";
+        }
+        return "error";
     }
 
     @Transactional
@@ -102,10 +158,18 @@ public class CardService {
         if (card.getStatus() == CardStatus.BLOCKED){
             throw new ConflictErrorException("Карта уже заблокирована");
         }
-        card.setBlockRequest(true);
+        if (!card.isBlockRequest()) {
+            card.setBlockRequest(true);
+            card.setBlockRequestedAt(LocalDateTime.now());
+        }
         cardRepository.save(card);
     }
 
+    public CardSummaryDTO getSummary(String username) {
+        return summaryCache.get(username,
+                owner -> CardSummaryDTO.of(cardRepository.summarizeByOwnerUsername(owner)));
+    }
+
     public BigDecimal getBalance(String username, Long cardId) {
         return cardRepository.findByIdAndOwnerUsername(cardId, username)
                 .orElseThrow(() -> new CardNotFoundException(""))
@@ -125,6 +189,7 @@ public class CardService {
         card.setStatus(dto.getStatus());
 
         cardRepository.save(card);
+        summaryCache.evict(owner.getUsername());
 
         return new CardDTO(card, cardNumber.getMasked(card.getEncryptedNumber()));
     }
@@ -139,6 +204,7 @@ public class CardService {
         }
         card.setStatus(CardStatus.BLOCKED);
         cardRepository.save(card);
+        summaryCache.evict(card.getOwner().getUsername());
     }
 
     @Transactional
@@ -150,19 +216,50 @@ public class CardService {
             throw new ConflictErrorException("Эту карту нельзя активировать");
         }
         card.setStatus(CardStatus.ACTIVE);
+        card.setBlockRequest(false);
+        card.setBlockRequestedAt(null);
         cardRepository.save(card);
+        summaryCache.evict(card.getOwner().getUsername());
     }
 
+    // Карта только помечается удалённой: переводы по ней остаются, пока её не заберёт CardPurgeService
     @Transactional
     public void deleteCard(Long id) {
-        Card card = cardRepository.findById(id)
+        String owner = cardRepository.findOwnerUsernameById(id)
                 .orElseThrow(() -> new CardNotFoundException(""));
 
-        cardRepository.deleteById(id);
+        if (cardRepository.softDeleteById(id, LocalDateTime.now()) == 0) {
+            throw new CardNotFoundException("");
+        }
+        summaryCache.evict(owner);
     }
 
     public Page<CardDTO> getAllCards(Pageable pageable) {
         return cardRepository.findAll(pageable)
                 .map(c -> new CardDTO(c, cardNumber.getMasked(c.getEncryptedNumber())));
     }
+
+    public Slice<CardDTO> getAllCardsSlice(Pageable pageable) {
+        return cardRepository.findSliceBy(pageable)
+                .map(c -> new CardDTO(c, cardNumber.getMasked(c.getEncryptedNumber())));
+    }
+
+    public Page<CardDTO> getPendingBlockRequests(Pageable pageable) {
+        return cardRepository.findPendingBlockRequests(pageable)
+                .map(c -> new CardDTO(c, cardNumber.getMasked(c.getEncryptedNumber())));
+    }
+
+    @Transactional
+    public List<CardDTO> processNextBlockRequests(int limit) {
+        int batch = Math.max(1, Math.min(limit, MAX_BLOCK_REQUESTS_PER_CALL));
+        List<Card> cards = cardRepository.lockNextPendingBlockRequests(batch);
+
+        cards.forEach(card -> card.setStatus(CardStatus.BLOCKED));
+        cardRepository.saveAll(cards);
+        cards.forEach(card -> summaryCache.evict(card.getOwner().getUsername()));
+
+        return cards.stream()
+                .map(c -> new CardDTO(c, cardNumber.getMasked(c.getEncryptedNumber())))
+                .toList();
+    }
 }
@@ -0,0 +1,55 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardSummaryDTO;
+import com.example.bankcards.util.CacheLoading;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Короткоживущий кэш сводки по картам пользователя. При ttl = 0 кэш выключен.
+ * Инвалидация внутри транзакции откладывается до коммита, иначе параллельный
+ * запрос может успеть закэшировать ещё не изменённые данные.
+ */
+@Component
+public class CardSummaryCache {
+
+    private final AsyncCache<String, CardSummaryDTO> cache;
+
+    public CardSummaryCache(@Value("${cards.summary.cache-ttl:0s}") Duration ttl,
+                            @Value("${cards.summary.cache-max-size:10000}") long maxSize) {
+        this.cache = ttl.isZero() ? null : Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .buildAsync();
+    }
+
+    public CardSummaryDTO get(String username, Function<String, CardSummaryDTO> loader) {
+        if (cache == null) {
+            return loader.apply(username);
+        }
+        return CacheLoading.get(cache, username, loader);
+    }
+
+    public void evict(String username) {
+        if (cache == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.synchronous().invalidate(username);
+                }
+            });
+        } else {
+            cache.synchronous().invalidate(username);
+        }
+    }
+}
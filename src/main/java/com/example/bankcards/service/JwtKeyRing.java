@@ -0,0 +1,330 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.JwtSigningKey;
+import com.example.bankcards.repository.JwtSigningKeyRepository;
+import com.example.bankcards.util.TokenDigest;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ключи подписи JWT.
+ * HS256 - один общий секрет из jwt.secret-file, как раньше.
+ * ES256 - пары ключей хранятся в таблице jwt_signing_keys, поэтому все узлы и
+ * перезапуски подписывают и проверяют одними и теми же kid. Приватные ключи
+ * зашифрованы ключом из jwt.secret-file, который должен совпадать на всех узлах.
+ * Раз в refresh-interval каждый узел перечитывает таблицу и, когда текущему ключу
+ * подходит rotation-interval, добавляет следующий; вставка условная, так что
+ * одновременная ротация на нескольких узлах добавляет один ключ. Следующий ключ
+ * сначала только публикуется в JWKS и начинает подписывать через publish-delay:
+ * за это время его успевают прочитать все узлы и клиенты с закэшированным JWKS.
+ * Предыдущий ключ ещё overlap принимается для проверки, чтобы выданные им токены
+ * доживали до истечения. Публичные ключи отдаются через JWKS, так что другим
+ * сервисам для проверки токенов секрет не нужен.
+ */
+@Slf4j
+@Component
+public class JwtKeyRing extends SigningKeyResolverAdapter {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    private record SigningKey(String kid, Key privateKey, Key publicKey, Instant activeFrom, Instant retireAt) {
+    }
+
+    // keys упорядочены по activeFrom; в byKid те же ключи для поиска при проверке
+    private record State(List<SigningKey> keys, Map<String, SigningKey> byKid) {
+    }
+
+    private final JwtSigningKeyRepository repository;
+    private final SignatureAlgorithm algorithm;
+    private final Duration rotationInterval;
+    private final Duration overlap;
+    private final Duration publishDelay;
+    private final Duration jwksMaxAge;
+    private final SecureRandom random = new SecureRandom();
+    private SecretKeySpec encryptionKey;
+    private volatile State state;
+
+    public JwtKeyRing(@Value("${jwt.secret-file}") Resource secretResource,
+                      JwtSigningKeyRepository repository,
+                      @Value("${jwt.signing.algorithm:HS256}") String algorithm,
+                      @Value("${jwt.signing.rotation-interval:P1D}") Duration rotationInterval,
+                      @Value("${jwt.signing.overlap:PT1H}") Duration overlap,
+                      @Value("${jwt.signing.publish-delay:PT10M}") Duration publishDelay,
+                      @Value("${jwt.signing.refresh-interval:PT1M}") Duration refreshInterval,
+                      @Value("${jwt.jwks.max-age:PT5M}") Duration jwksMaxAge) throws IOException {
+        this.repository = repository;
+        this.algorithm = SignatureAlgorithm.forName(algorithm);
+        this.rotationInterval = rotationInterval;
+        this.overlap = overlap;
+        this.publishDelay = publishDelay;
+        this.jwksMaxAge = jwksMaxAge;
+        // Узел узнаёт о новом ключе не позже чем через refresh-interval, клиент - ещё через max-age JWKS
+        if (publishDelay.compareTo(refreshInterval.plus(jwksMaxAge)) < 0) {
+            throw new IllegalArgumentException("jwt.signing.publish-delay должен быть не меньше "
+                    + "jwt.signing.refresh-interval + jwt.jwks.max-age");
+        }
+
+        String jwtSecret = new String(secretResource.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        if (this.algorithm == SignatureAlgorithm.HS256) {
+            Key key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+            SigningKey signingKey = new SigningKey(null, key, key, Instant.EPOCH, null);
+            this.state = new State(List.of(signingKey), Map.of());
+        } else if (this.algorithm == SignatureAlgorithm.ES256) {
+            if (jwtSecret.isEmpty()) {
+                throw new IllegalArgumentException("jwt.secret-file пуст: им шифруются ключи ES256 в БД");
+            }
+            this.encryptionKey = new SecretKeySpec(TokenDigest.sha256(jwtSecret), "AES");
+            // Первый запуск: ключ добавляется, только если таблица пуста, иначе берутся ключи других узлов.
+            // Первый ключ подписывает сразу: токенов и закэшированных JWKS до него нет
+            State loaded = load(Map.of());
+            if (loaded.keys().isEmpty()) {
+                insert(Instant.now(), EPOCH);
+                loaded = load(Map.of());
+            }
+            this.state = loaded;
+        } else {
+            throw new IllegalArgumentException("Неподдерживаемый алгоритм подписи JWT: " + algorithm);
+        }
+    }
+
+    public SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public Duration getJwksMaxAge() {
+        return jwksMaxAge;
+    }
+
+    // null для HS256: у единственного ключа нет идентификатора
+    public String getSigningKeyId() {
+        return signingKey(state, Instant.now()).kid();
+    }
+
+    // kid и ключ берутся из одного снимка, поэтому в момент смены ключа они не разойдутся
+    public JwtBuilder sign(JwtBuilder builder) {
+        SigningKey key = signingKey(state, Instant.now());
+        return builder.setHeaderParam("kid", key.kid())
+                .signWith(key.privateKey(), algorithm);
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        SigningKey key = acceptedKey(header.getKeyId());
+        if (key == null) {
+            throw new JwtException("Неизвестный ключ подписи: " + header.getKeyId());
+        }
+        return key.publicKey();
+    }
+
+    // Принимается ли сейчас ключ с этим kid; проверяется и для токенов из кэша проверенных
+    public boolean isAccepted(String kid) {
+        return acceptedKey(kid) != null;
+    }
+
+    private SigningKey acceptedKey(String kid) {
+        State current = state;
+        if (algorithm == SignatureAlgorithm.HS256) {
+            return current.keys().get(0);
+        }
+        SigningKey key = kid == null ? null : current.byKid().get(kid);
+        if (key == null || !isLive(key, Instant.now())) {
+            return null;
+        }
+        return key;
+    }
+
+    // Перечитывает ключи из БД и при необходимости добавляет следующий
+    @Scheduled(initialDelayString = "${jwt.signing.refresh-interval:PT1M}",
+            fixedDelayString = "${jwt.signing.refresh-interval:PT1M}")
+    public void refresh() {
+        if (algorithm == SignatureAlgorithm.HS256) {
+            return;
+        }
+        Instant now = Instant.now();
+        State current = load(state.byKid());
+        SigningKey newest = current.keys().get(current.keys().size() - 1);
+        // Ключ добавляется заранее, чтобы начать подписывать к концу rotation-interval текущего;
+        // пока следующий ключ ждёт своей очереди, новый не нужен
+        boolean pending = newest.activeFrom().isAfter(now);
+        if (!pending && !newest.activeFrom().plus(rotationInterval).minus(publishDelay).isAfter(now)) {
+            rotate(newest);
+            current = load(current.byKid());
+        }
+
+        List<String> retired = current.keys().stream()
+                .filter(key -> !isLive(key, now))
+                .map(SigningKey::kid)
+                .toList();
+        if (!retired.isEmpty()) {
+            repository.deleteAllByIdInBatch(retired);
+        }
+        state = current;
+    }
+
+    private void rotate(SigningKey newest) {
+        Instant activeFrom = Instant.now().plus(publishDelay);
+        if (insert(activeFrom, toLocal(newest.activeFrom())) > 0) {
+            log.info("Добавлен новый ключ подписи JWT, подписывает с {}", activeFrom);
+        }
+    }
+
+    // JWK Set (RFC 7517) с публичными ключами, которые сейчас принимаются при проверке, включая следующий
+    public List<Map<String, Object>> getPublicJwks() {
+        if (algorithm == SignatureAlgorithm.HS256) {
+            return List.of();
+        }
+        Instant now = Instant.now();
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        for (SigningKey key : state.keys()) {
+            if (!isLive(key, now)) {
+                continue;
+            }
+            ECPublicKey publicKey = (ECPublicKey) key.publicKey();
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("kid", key.kid());
+            jwk.put("use", "sig");
+            jwk.put("alg", algorithm.getValue());
+            jwk.put("x", coordinate(publicKey.getW().getAffineX()));
+            jwk.put("y", coordinate(publicKey.getW().getAffineY()));
+            jwks.add(jwk);
+        }
+        return jwks;
+    }
+
+    // Последний ключ, уже вступивший в силу
+    private static SigningKey signingKey(State current, Instant now) {
+        List<SigningKey> keys = current.keys();
+        for (int i = keys.size() - 1; i > 0; i--) {
+            if (!keys.get(i).activeFrom().isAfter(now)) {
+                return keys.get(i);
+            }
+        }
+        return keys.get(0);
+    }
+
+    private static boolean isLive(SigningKey key, Instant now) {
+        return key.retireAt() == null || key.retireAt().isAfter(now);
+    }
+
+    // Уже расшифрованные ключи берутся из known, чтобы не разбирать их при каждом обновлении
+    private State load(Map<String, SigningKey> known) {
+        List<JwtSigningKey> rows = new ArrayList<>(repository.findAll());
+        rows.sort(Comparator.comparing(JwtSigningKey::getActiveFrom).thenComparing(JwtSigningKey::getKid));
+
+        List<SigningKey> keys = new ArrayList<>(rows.size());
+        Map<String, SigningKey> byKid = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            JwtSigningKey row = rows.get(i);
+            // Ключ уходит из оборота через overlap после того, как в силу вступил следующий
+            Instant retireAt = i + 1 < rows.size() ? toInstant(rows.get(i + 1).getActiveFrom()).plus(overlap) : null;
+            SigningKey cached = known.get(row.getKid());
+            SigningKey key = cached != null
+                    ? new SigningKey(cached.kid(), cached.privateKey(), cached.publicKey(), cached.activeFrom(), retireAt)
+                    : decode(row, retireAt);
+            keys.add(key);
+            byKid.put(key.kid(), key);
+        }
+        return new State(List.copyOf(keys), Map.copyOf(byKid));
+    }
+
+    private int insert(Instant activeFrom, LocalDateTime after) {
+        KeyPair keyPair = Keys.keyPairFor(algorithm);
+        return repository.insertIfNoneActiveAfter(UUID.randomUUID().toString(),
+                encrypt(keyPair.getPrivate().getEncoded()),
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()),
+                toLocal(activeFrom), after);
+    }
+
+    private SigningKey decode(JwtSigningKey row, Instant retireAt) {
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            Key privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decrypt(row.getPrivateKey())));
+            Key publicKey = keyFactory.generatePublic(
+                    new X509EncodedKeySpec(Base64.getDecoder().decode(row.getPublicKey())));
+            return new SigningKey(row.getKid(), privateKey, publicKey, toInstant(row.getActiveFrom()), retireAt);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось прочитать ключ подписи JWT " + row.getKid()
+                    + ": jwt.secret-file не совпадает с узлом, который его создал", e);
+        }
+    }
+
+    private String encrypt(byte[] plain) {
+        try {
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            byte[] encrypted = cipher.doFinal(plain);
+            byte[] result = new byte[iv.length + encrypted.length];
+            System.arraycopy(iv, 0, result, 0, iv.length);
+            System.arraycopy(encrypted, 0, result, iv.length, encrypted.length);
+            return Base64.getEncoder().encodeToString(result);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось зашифровать ключ подписи JWT", e);
+        }
+    }
+
+    private byte[] decrypt(String encoded) throws GeneralSecurityException {
+        byte[] data = Base64.getDecoder().decode(encoded);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(GCM_TAG_BITS, data, 0, GCM_IV_LENGTH));
+        return cipher.doFinal(data, GCM_IV_LENGTH, data.length - GCM_IV_LENGTH);
+    }
+
+    private static Instant toInstant(LocalDateTime value) {
+        return value.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static LocalDateTime toLocal(Instant value) {
+        return LocalDateTime.ofInstant(value, ZoneId.systemDefault());
+    }
+
+    // Координата P-256 кодируется ровно 32 байтами без знакового байта BigInteger
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, fixed, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+    }
+}
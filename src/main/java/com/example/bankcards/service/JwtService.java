@@ -1,22 +1,36 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.entity.User;
+import com.example.bankcards.util.TokenDigest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JwtService {
-    private final String jwtSecret;
+    // Refresh-токен подписан тем же ключом, поэтому тип указывается явно: API принимает только access
+    public static final String TOKEN_TYPE_CLAIM = "token_type";
+    public static final String ACCESS_TOKEN_TYPE = "access";
+    public static final String REFRESH_TOKEN_TYPE = "refresh";
+
+    // Парсер неизменяем и потокобезопасен, ключ для проверки он берёт из keyRing по kid
+    private final JwtKeyRing keyRing;
+    private final JwtParser jwtParser;
+    // SHA-256 недавно проверенных токенов: повторный запрос с тем же токеном не проверяет подпись заново
+    private final Cache<ByteBuffer, VerifiedToken> verifiedTokens;
 
     @Value("${jwt.expiration.access}")
     public long jwtExpirationAccess;
@@ -24,51 +38,102 @@ public class JwtService {
     @Value("${jwt.expiration.refresh}")
     public long jwtExpirationRefresh;
 
-    public JwtService(@Value("${jwt.secret-file}")
-                      Resource secretResource) throws IOException {
-        this.jwtSecret = new String(secretResource.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+    public JwtService(JwtKeyRing keyRing,
+                      @Value("${jwt.verified-cache.max-size:10000}") long verifiedCacheSize) {
+        this.keyRing = keyRing;
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(keyRing)
+                .build();
+        this.verifiedTokens = verifiedCacheSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<ByteBuffer, VerifiedToken>() {
+                    // Запись живёт не дольше самого токена
+                    @Override
+                    public long expireAfterCreate(ByteBuffer key, VerifiedToken token, long currentTime) {
+                        long ttl = token.expiresAt() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(ttl, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer key, VerifiedToken token, long currentTime,
+                                                  long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer key, VerifiedToken token, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
+    // По jti access-токен можно отозвать до истечения срока
     public String generateAccessToken(User user){
-        return Jwts.builder()
-                .setSubject(user.getUsername())
-                .claim("role", user.getRole())
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationAccess))
-                .signWith(Keys.hmacShaKeyFor(jwtSecret.getBytes()), SignatureAlgorithm.HS256)
-                .compact();
+        return buildToken(user, ACCESS_TOKEN_TYPE, jwtExpirationAccess, UUID.randomUUID().toString());
     }
 
+    // jti делает каждый refresh-токен уникальным, даже если два входа пришлись на одну секунду
     public String generateRefreshToken(User user){
-        return Jwts.builder()
-                .setSubject(user.getUsername())
-                .claim("role", user.getRole())
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationRefresh))
-                .signWith(Keys.hmacShaKeyFor(jwtSecret.getBytes()), SignatureAlgorithm.HS256)
-                .compact();
+        return buildToken(user, REFRESH_TOKEN_TYPE, jwtExpirationRefresh, UUID.randomUUID().toString());
+    }
+
+    // Проверяет подпись и срок действия; бросает JwtException для невалидного токена
+    public Claims parseClaims(String token) {
+        if (verifiedTokens == null) {
+            return jwtParser.parseClaimsJws(token).getBody();
+        }
+        ByteBuffer digest = ByteBuffer.wrap(TokenDigest.sha256(token));
+        VerifiedToken verified = verifiedTokens.getIfPresent(digest);
+        // Ключ мог быть выведен из оборота уже после проверки: тогда токен разбирается заново и отклоняется
+        if (verified != null && keyRing.isAccepted(verified.kid())) {
+            return Jwts.claims(verified.claims());
+        }
+        Jws<Claims> jws = jwtParser.parseClaimsJws(token);
+        Claims claims = jws.getBody();
+        if (claims.getExpiration() != null) {
+            verifiedTokens.put(digest, new VerifiedToken(jws.getHeader().getKeyId(), Map.copyOf(claims),
+                    claims.getExpiration().getTime()));
+        }
+        return claims;
+    }
+
+    // Токены без типа выпущены до его появления и тоже не принимаются
+    public boolean isAccessToken(Claims claims) {
+        return ACCESS_TOKEN_TYPE.equals(claims.get(TOKEN_TYPE_CLAIM, String.class));
     }
 
     public String extractUsername(String token) {
-        return Jwts.parser()
-                .setSigningKey(jwtSecret.getBytes())
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(jwtSecret.getBytes())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            String username = claims.getSubject();
-            return username.equals(userDetails.getUsername());
+            return isTokenValid(parseClaims(token), userDetails);
         } catch (IllegalArgumentException e) {
             return false;
         }
     }
+
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        String username = claims.getSubject();
+        return username != null && username.equals(userDetails.getUsername());
+    }
+
+    // Claims изменяемы, поэтому в кэше лежит неизменяемая копия, а вызывающий получает свою
+    private record VerifiedToken(String kid, Map<String, Object> claims, long expiresAt) {
+    }
+
+    private String buildToken(User user, String type, long expiration, String id) {
+        long now = System.currentTimeMillis();
+        return keyRing.sign(Jwts.builder()
+                .setId(id)
+                .setSubject(user.getUsername())
+                .claim("role", user.getRole())
+                .claim(TOKEN_TYPE_CLAIM, type)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expiration)))
+                .compact();
+    }
 }
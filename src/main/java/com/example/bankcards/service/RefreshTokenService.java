@@ -3,45 +3,110 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.entity.RefreshToken;
 import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.util.TokenDigest;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
+@Slf4j
 @Service
 public class RefreshTokenService {
 
     @Autowired
     private RefreshTokenRepository refreshTokenRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${refresh-tokens.purge.batch-size:1000}")
+    private int purgeBatchSize;
+
+    @Value("${refresh-tokens.purge.max-batches:100}")
+    private int purgeMaxBatches;
+
+    @Value("${refresh-tokens.max-sessions:5}")
+    private int maxSessions;
+
+    // Новый вход открывает новое семейство; самые старые сессии сверх лимита закрываются
     public void saveRefreshToken(String refreshToken, String username, LocalDateTime expiryDate) {
-        RefreshToken token = new RefreshToken(refreshToken, username, expiryDate);
-        refreshTokenRepository.save(token);
+        List<byte[]> families = refreshTokenRepository.findActiveFamilies(username, LocalDateTime.now());
+        for (int i = Math.max(maxSessions - 1, 0); i < families.size(); i++) {
+            refreshTokenRepository.deleteByFamilyId(families.get(i));
+        }
 
+        RefreshToken token = new RefreshToken(hash(refreshToken), username, expiryDate);
+        refreshTokenRepository.save(token);
     }
 
-    public boolean isValid(String token){
-        Optional<RefreshToken> refreshToken = refreshTokenRepository.findByToken(token);
+    /**
+     * Помечает токен использованным и возвращает его, если ротация разрешена.
+     * Повторное предъявление уже использованного токена означает, что он утёк:
+     * всё семейство удаляется, и владельцу придётся войти заново.
+     */
+    public Optional<RefreshToken> useRefreshToken(String token) {
+        byte[] tokenHash = hash(token);
+        Optional<RefreshToken> refreshToken = refreshTokenRepository.findById(tokenHash);
 
         if (refreshToken.isEmpty()) {
-            return false;
+            return Optional.empty();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (refreshToken.get().getExpiryDate().isBefore(now)){
+            refreshTokenRepository.deleteByTokenHash(tokenHash);
+            return Optional.empty();
         }
 
-        if (refreshToken.get().getExpiryDate().isBefore(LocalDateTime.now())){
-            refreshTokenRepository.deleteByToken(token);
-            return false;
+        if (refreshTokenRepository.markUsed(tokenHash, now) == 0) {
+            refreshTokenRepository.deleteByFamilyId(refreshToken.get().getFamilyId());
+            meterRegistry.counter("refresh_tokens.reused").increment();
+            return Optional.empty();
         }
-        return true;
+        return refreshToken;
     }
 
-    public String getUsernameByToken(String token){
-        return refreshTokenRepository.findByToken(token).get().getUsername();
+    public void saveRotatedToken(String refreshToken, RefreshToken previous, LocalDateTime expiryDate) {
+        refreshTokenRepository.save(new RefreshToken(hash(refreshToken), previous.getUsername(),
+                expiryDate, previous.getFamilyId()));
     }
 
-    public void deleteRefreshToken(String token){
-        refreshTokenRepository.deleteByToken(token);
+    // Logout закрывает всю сессию, а не только предъявленный токен
+    public boolean deleteRefreshToken(String token){
+        return refreshTokenRepository.deleteFamilyByTokenHash(hash(token)) > 0;
     }
-}
 
+    public int deleteAllRefreshTokens(String username){
+        return refreshTokenRepository.deleteByUsername(username);
+    }
+
+    static byte[] hash(String token) {
+        return TokenDigest.sha256(token);
+    }
 
+    // Каждая пачка удаляется в своей транзакции, чтобы не держать блокировки на всю чистку
+    @Scheduled(initialDelayString = "${refresh-tokens.purge.interval:PT10M}",
+            fixedDelayString = "${refresh-tokens.purge.interval:PT10M}")
+    public int purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        for (int i = 0; i < purgeMaxBatches; i++) {
+            int deleted = refreshTokenRepository.deleteExpiredBatch(now, purgeBatchSize);
+            total += deleted;
+            if (deleted < purgeBatchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Удалено истёкших refresh-токенов: {}", total);
+        }
+        meterRegistry.counter("refresh_tokens.purged").increment(total);
+        return total;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.UserDeletionDTO;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserDetailsCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Удаление пользователя вместе с картами и переводами. Строки удаляются пачками
+ * по batch-size, каждая пачка в своей транзакции, поэтому блокируется не больше
+ * batch-size строк за раз и ничего не загружается в память. Пользователи, у которых
+ * данных больше async-threshold, удаляются в фоне по одному; прогресс хранится в памяти узла.
+ */
+@Slf4j
+@Service
+public class UserDeletionService {
+
+    // Перевод, созданный между пачками, не даст удалить карту; тогда проход повторяется
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final UserRepository userRepository;
+    private final CardRepository cardRepository;
+    private final CardTransactionRepository transactionRepository;
+    private final UserDetailsCache userDetailsCache;
+    private final CardSummaryCache summaryCache;
+    private final int batchSize;
+    private final int asyncThreshold;
+    private final Cache<Long, UserDeletionDTO> deletions;
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(task -> new Thread(task, "user-deletion"));
+
+    public UserDeletionService(UserRepository userRepository,
+                               CardRepository cardRepository,
+                               CardTransactionRepository transactionRepository,
+                               UserDetailsCache userDetailsCache,
+                               CardSummaryCache summaryCache,
+                               @Value("${users.deletion.batch-size:1000}") int batchSize,
+                               @Value("${users.deletion.async-threshold:10000}") int asyncThreshold,
+                               @Value("${users.deletion.progress-ttl:PT1H}") Duration progressTtl) {
+        this.userRepository = userRepository;
+        this.cardRepository = cardRepository;
+        this.transactionRepository = transactionRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.summaryCache = summaryCache;
+        this.batchSize = batchSize;
+        this.asyncThreshold = asyncThreshold;
+        this.deletions = Caffeine.newBuilder()
+                .expireAfterWrite(progressTtl)
+                .build();
+    }
+
+    public UserDeletionDTO delete(User user) {
+        UserDeletionDTO progress = new UserDeletionDTO(user.getId(), user.getUsername(),
+                UserDeletionDTO.Status.RUNNING, 0, 0, LocalDateTime.now(), null);
+        UserDeletionDTO running = deletions.asMap().putIfAbsent(user.getId(), progress);
+        if (running != null && running.getStatus() == UserDeletionDTO.Status.RUNNING) {
+            return running;
+        }
+        deletions.put(user.getId(), progress);
+
+        long rows = cardRepository.countByOwnerId(user.getId())
+                + transactionRepository.countByOwnerIdUpTo(user.getId(), asyncThreshold);
+        if (rows <= asyncThreshold) {
+            run(progress);
+        } else {
+            executor.execute(() -> run(progress));
+        }
+        return progress;
+    }
+
+    public Optional<UserDeletionDTO> getProgress(Long userId) {
+        return Optional.ofNullable(deletions.getIfPresent(userId));
+    }
+
+    private void run(UserDeletionDTO progress) {
+        Long userId = progress.getUserId();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                int deleted;
+                do {
+                    deleted = transactionRepository.deleteBatchByOwnerId(userId, batchSize);
+                    progress.setTransactionsDeleted(progress.getTransactionsDeleted() + deleted);
+                } while (deleted == batchSize);
+
+                try {
+                    do {
+                        deleted = cardRepository.deleteBatchByOwnerId(userId, batchSize);
+                        progress.setCardsDeleted(progress.getCardsDeleted() + deleted);
+                    } while (deleted == batchSize);
+
+                    userRepository.deleteById(userId);
+                    break;
+                } catch (DataIntegrityViolationException e) {
+                    if (attempt == MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                }
+            }
+            progress.setStatus(UserDeletionDTO.Status.DONE);
+            log.info("Пользователь {} удалён: {} карт, {} переводов",
+                    progress.getUsername(), progress.getCardsDeleted(), progress.getTransactionsDeleted());
+        } catch (RuntimeException e) {
+            progress.setStatus(UserDeletionDTO.Status.FAILED);
+            log.error("Не удалось удалить пользователя {}", progress.getUsername(), e);
+        } finally {
+            progress.setFinishedAt(LocalDateTime.now());
+            // Пока шло удаление, пользователь мог снова попасть в кэши
+            userDetailsCache.evict(progress.getUsername());
+            summaryCache.evict(progress.getUsername());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
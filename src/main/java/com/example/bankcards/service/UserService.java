@@ -1,21 +1,33 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.OwnerCardCount;
+import com.example.bankcards.dto.UserDeletionDTO;
 import com.example.bankcards.dto.UserDTO;
+import com.example.bankcards.dto.UserSearchDTO;
+import com.example.bankcards.dto.UserSearchPageDTO;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.ConflictErrorException;
 import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.RevokedUserRegistry;
+import com.example.bankcards.security.UserDetailsCache;
 import com.example.bankcards.util.UserMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,6 +39,16 @@ public class UserService {
     @Autowired
     private final UserMapper userMapper;
 
+    private final RevokedUserRegistry revokedUserRegistry;
+
+    private final UserDetailsCache userDetailsCache;
+
+    private final RefreshTokenService refreshTokenService;
+
+    private final UserDeletionService userDeletionService;
+
+    private final CardRepository cardRepository;
+
     public UserDTO getMe(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException(username));
@@ -38,21 +60,62 @@ public class UserService {
                 .map(user -> userMapper.map(user));
     }
 
+    public Slice<UserDTO> getAllUsersSlice(Pageable pageable) {
+        return userRepository.findSliceBy(pageable)
+                .map(user -> userMapper.map(user));
+    }
+
+    /**
+     * Поиск по префиксу имени. Страница идёт по индексу username начиная с after,
+     * поэтому её стоимость не зависит ни от номера страницы, ни от размера таблицы.
+     * Число карт считается одним запросом на всю страницу.
+     */
+    public UserSearchPageDTO searchUsers(String prefix, String after, int size, boolean withCards) {
+        String pattern = prefix.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        List<User> users = userRepository.searchByUsernamePrefix(pattern, after == null ? "" : after,
+                PageRequest.of(0, size + 1));
+
+        String next = null;
+        if (users.size() > size) {
+            users = users.subList(0, size);
+            next = users.get(size - 1).getUsername();
+        }
+
+        Map<Long, Long> cards = !withCards || users.isEmpty() ? Map.of()
+                : cardRepository.countByOwnerIds(users.stream().map(User::getId).toList()).stream()
+                        .collect(Collectors.toMap(OwnerCardCount::getOwnerId, OwnerCardCount::getCards));
+
+        return new UserSearchPageDTO(users.stream()
+                .map(user -> new UserSearchDTO(user.getId(), user.getUsername(), user.getRole(),
+                        withCards ? cards.getOrDefault(user.getId(), 0L) : null))
+                .toList(), next);
+    }
+
     public UserDTO getUser(Long id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException(""));
         return userMapper.map(user);
     }
 
-    @Transactional
-    public boolean deleteUser(Long id) {
+    // Не транзакционный: карты и переводы удаляются пачками в отдельных транзакциях
+    public UserDeletionDTO deleteUser(Long id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException(""));
         if (user.getRole() == Role.ADMIN) {
             throw new ConflictErrorException("Админ не может управлять другими админами");
         }
-        userRepository.delete(user);
-        return true;
+        // Сессии закрываются сразу, не дожидаясь конца удаления данных
+        revokedUserRegistry.revoke(user.getUsername());
+        refreshTokenService.deleteAllRefreshTokens(user.getUsername());
+        userDetailsCache.evict(user.getUsername());
+        return userDeletionService.delete(user);
+    }
+
+    public UserDeletionDTO getDeletion(Long id) {
+        return userDeletionService.getProgress(id)
+                .orElseThrow(() -> new UserNotFoundException(""));
     }
 }
 
@@ -0,0 +1,42 @@
+package com.example.bankcards.util;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Загрузка значения в кэш вне блокировок Caffeine. Cache.get(key, loader) выполняет
+ * loader внутри compute ConcurrentHashMap, то есть под synchronized: запрос в БД там
+ * закрепляет виртуальный поток за потоком-носителем. Здесь в кэш под блокировкой
+ * кладётся только пустой future, а загружает его первый пришедший поток уже снаружи;
+ * остальные ждут тот же future, как и раньше ждали compute.
+ */
+public final class CacheLoading {
+
+    private CacheLoading() {
+    }
+
+    public static <K, V> V get(AsyncCache<K, V> cache, K key, Function<K, V> loader) {
+        CompletableFuture<V> loading = new CompletableFuture<>();
+        CompletableFuture<V> future = cache.get(key, (k, executor) -> loading);
+        if (future == loading) {
+            try {
+                loading.complete(loader.apply(key));
+            } catch (RuntimeException | Error e) {
+                // Упавшую загрузку Caffeine сам убирает из кэша
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
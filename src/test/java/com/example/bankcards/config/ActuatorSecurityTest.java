@@ -0,0 +1,53 @@
+package com.example.bankcards.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Без аннотации Spring Boot отключает экспорт метрик в тестах
+@AutoConfigureObservability
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "management.server.port=0")
+@DisplayName("Доступ к actuator")
+class ActuatorSecurityTest {
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    private HttpResponse<String> get(int port, String path) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    @DisplayName("Метрики отдаются без токена на порту actuator")
+    void prometheus_ManagementPort_Open() throws Exception {
+        HttpResponse<String> response = get(managementPort, "/actuator/prometheus");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).contains("jvm_memory_used_bytes");
+    }
+
+    @Test
+    @DisplayName("На основном порту метрики без токена недоступны")
+    void prometheus_ServerPort_Unauthorized() throws Exception {
+        assertThat(get(serverPort, "/actuator/prometheus").statusCode()).isIn(401, 403);
+    }
+}
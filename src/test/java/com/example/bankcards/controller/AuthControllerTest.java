@@ -5,12 +5,14 @@ import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.entity.RefreshToken;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
-import com.example.bankcards.repository.RefreshTokenRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AccessTokenDenylist;
 
 import com.example.bankcards.service.JwtService;
 import com.example.bankcards.service.RefreshTokenService;
 import com.example.bankcards.util.UserMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import jakarta.annotation.Resource;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
@@ -19,20 +21,28 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
 
+import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.Optional;
 import java.util.stream.Stream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -59,7 +69,7 @@ class AuthControllerTest {
     @MockBean
     private RefreshTokenService refreshTokenService;
     @MockBean
-    private RefreshTokenRepository refreshTokenRepository;
+    private AccessTokenDenylist accessTokenDenylist;
 
 
     @Nested
@@ -76,10 +86,9 @@ class AuthControllerTest {
             user.setUsername("testusername");
             user.setRole(Role.USER);
 
-            when(userRepository.findByUsername("testusername")).thenReturn(Optional.empty());
             when(userMapper.map(any(UserAuthDTO.class))).thenReturn(user);
             when(passwordEncoder.encode("testpassword")).thenReturn("encodedPass");
-            when(userRepository.save(any(User.class))).thenReturn(user);
+            when(userRepository.insertIfAbsent("testusername", "encodedPass", "USER")).thenReturn(1);
             when(userMapper.map(any(User.class))).thenReturn(new UserDTO("testusername",Role.USER));
 
             mockMvc.perform(post("/api/auth/register")
@@ -102,7 +111,12 @@ class AuthControllerTest {
             {"username":"existingUser","password":"testpassword"}
             """;
 
-            when(userRepository.findByUsername("existingUser")).thenReturn(Optional.of(new User()));
+            User user = new User();
+            user.setUsername("existingUser");
+
+            when(userMapper.map(any(UserAuthDTO.class))).thenReturn(user);
+            when(passwordEncoder.encode("testpassword")).thenReturn("encodedPass");
+            when(userRepository.insertIfAbsent("existingUser", "encodedPass", "USER")).thenReturn(0);
 
             mockMvc.perform(post("/api/auth/register")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -116,6 +130,8 @@ class AuthControllerTest {
                     )
                     .andDo(print())
                     .andReturn();
+
+            verify(userRepository, never()).findByUsername(any());
         }
 
         static Stream<Arguments> invalidRegister() {
@@ -178,6 +194,34 @@ class AuthControllerTest {
         }
 
 
+        @Test
+        void login_Valid_RefreshTokenExpiresAfterRefreshTtl() throws Exception {
+            String json = """
+            {"username":"testusername","password":"testpassword"}
+            """;
+
+            User user = new User();
+            user.setUsername("testusername");
+
+            // jwt.expiration.refresh задаётся в миллисекундах
+            jwtService.jwtExpirationRefresh = 1_800_000;
+            when(authenticationManager.authenticate(any())).thenReturn(null);
+            when(userRepository.findByUsername("testusername")).thenReturn(Optional.of(user));
+            when(jwtService.generateAccessToken(user)).thenReturn("access123");
+            when(jwtService.generateRefreshToken(user)).thenReturn("refresh123");
+
+            LocalDateTime before = LocalDateTime.now();
+            mockMvc.perform(post("/api/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(json))
+                    .andExpect(status().isOk());
+
+            ArgumentCaptor<LocalDateTime> expiry = ArgumentCaptor.forClass(LocalDateTime.class);
+            verify(refreshTokenService).saveRefreshToken(eq("refresh123"), eq("testusername"), expiry.capture());
+            assertThat(expiry.getValue())
+                    .isBetween(before.plusMinutes(30), LocalDateTime.now().plusMinutes(30));
+        }
+
         @Test
         void login_Invalid_ShouldReturn401() throws Exception {
             String json = """
@@ -217,10 +261,12 @@ class AuthControllerTest {
             user.setUsername("testusername");
             user.setRole(Role.USER);
 
-            when(refreshTokenService.isValid("goodToken")).thenReturn(true);
-            when(refreshTokenService.getUsernameByToken("goodToken")).thenReturn("testusername");
+            RefreshToken previous = new RefreshToken(new byte[32], "testusername", LocalDateTime.now().plusDays(1));
+
+            when(refreshTokenService.useRefreshToken("goodToken")).thenReturn(Optional.of(previous));
             when(userRepository.findByUsername("testusername")).thenReturn(Optional.of(user));
             when(jwtService.generateAccessToken(user)).thenReturn("newAccess123");
+            when(jwtService.generateRefreshToken(user)).thenReturn("newRefresh123");
 
             mockMvc.perform(post("/api/auth/refresh")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -228,10 +274,44 @@ class AuthControllerTest {
                     .andExpectAll(
                             status().isOk(),
                             jsonPath("$.jwtAccess")
-                                    .value("newAccess123")
+                                    .value("newAccess123"),
+                            jsonPath("$.jwtRefresh")
+                                    .value("newRefresh123")
                     )
                     .andDo(print())
                     .andReturn();
+
+            verify(refreshTokenService).saveRotatedToken(eq("newRefresh123"), eq(previous), any());
+        }
+
+        @Test
+        void refresh_Valid_RotatedTokenExpiresAfterRefreshTtl() throws Exception {
+            String json = """
+            {"refreshToken":"goodToken"}
+            """;
+
+            User user = new User();
+            user.setUsername("testusername");
+            user.setRole(Role.USER);
+
+            RefreshToken previous = new RefreshToken(new byte[32], "testusername", LocalDateTime.now().plusDays(1));
+
+            jwtService.jwtExpirationRefresh = 1_800_000;
+            when(refreshTokenService.useRefreshToken("goodToken")).thenReturn(Optional.of(previous));
+            when(userRepository.findByUsername("testusername")).thenReturn(Optional.of(user));
+            when(jwtService.generateAccessToken(user)).thenReturn("newAccess123");
+            when(jwtService.generateRefreshToken(user)).thenReturn("newRefresh123");
+
+            LocalDateTime before = LocalDateTime.now();
+            mockMvc.perform(post("/api/auth/refresh")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(json))
+                    .andExpect(status().isOk());
+
+            ArgumentCaptor<LocalDateTime> expiry = ArgumentCaptor.forClass(LocalDateTime.class);
+            verify(refreshTokenService).saveRotatedToken(eq("newRefresh123"), eq(previous), expiry.capture());
+            assertThat(expiry.getValue())
+                    .isBetween(before.plusMinutes(30), LocalDateTime.now().plusMinutes(30));
         }
 
         @Test
@@ -240,7 +320,7 @@ class AuthControllerTest {
             {"refreshToken":"badToken"}
             """;
 
-            when(refreshTokenService.isValid("badToken")).thenReturn(false);
+            when(refreshTokenService.useRefreshToken("badToken")).thenReturn(Optional.empty());
 
             mockMvc.perform(post("/api/auth/refresh")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -262,8 +342,7 @@ class AuthControllerTest {
             {"refreshToken":"refresh123"}
             """;
 
-            when(refreshTokenRepository.findByToken("refresh123"))
-                    .thenReturn(Optional.of(new RefreshToken()));
+            when(refreshTokenService.deleteRefreshToken("refresh123")).thenReturn(true);
 
             mockMvc.perform(delete("/api/auth/logout")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -277,14 +356,36 @@ class AuthControllerTest {
                     .andReturn();
         }
 
+        @Test
+        void logout_WithAccessToken_ShouldRevokeIt() throws Exception {
+            String json = """
+            {"refreshToken":"refresh123"}
+            """;
+            Date expiresAt = new Date(System.currentTimeMillis() + 60_000);
+            Claims claims = Jwts.claims().setId("jti-1").setExpiration(expiresAt);
+
+            when(refreshTokenService.deleteRefreshToken("refresh123")).thenReturn(true);
+            when(jwtService.parseClaims("access123")).thenReturn(claims);
+            when(jwtService.isAccessToken(claims)).thenReturn(true);
+
+            mockMvc.perform(delete("/api/auth/logout")
+                            .header("Authorization", "Bearer access123")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(json))
+                    .andExpect(status().isOk())
+                    .andDo(print())
+                    .andReturn();
+
+            verify(accessTokenDenylist).revoke("jti-1", claims.getExpiration());
+        }
+
         @Test
         void logout_Invalid_ShouldReturn401() throws Exception {
             String json = """
             {"refreshToken":"badToken"}
             """;
 
-            when(refreshTokenRepository.findByToken("badToken"))
-                    .thenReturn(Optional.empty());
+            when(refreshTokenService.deleteRefreshToken("badToken")).thenReturn(false);
 
             mockMvc.perform(delete("/api/auth/logout")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -299,6 +400,28 @@ class AuthControllerTest {
                     .andDo(print())
                     .andReturn();
         }
+    
+        @Test
+        @WithMockUser(username = "testusername")
+        void logoutAll_ShouldDeleteAllUserTokens() throws Exception {
+            when(refreshTokenService.deleteAllRefreshTokens("testusername")).thenReturn(3);
+
+            mockMvc.perform(delete("/api/auth/logout-all"))
+                    .andExpectAll(
+                            status().isOk(),
+                            jsonPath("$.sessions")
+                                    .value(3)
+                    )
+                    .andDo(print())
+                    .andReturn();
+        }
+
+        @Test
+        void logoutAll_Anonymous_ShouldBeRejected() throws Exception {
+            mockMvc.perform(delete("/api/auth/logout-all"))
+                    .andExpect(status().isForbidden());
+
+            verify(refreshTokenService, never()).deleteAllRefreshTokens(any());
+        }
     }
 }
-
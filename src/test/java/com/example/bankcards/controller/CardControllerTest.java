@@ -2,6 +2,7 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardCreateDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSummaryDTO;
 import com.example.bankcards.dto.TransactionRequestDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
@@ -11,29 +12,41 @@ import com.example.bankcards.exception.CardNotFoundException;
 import com.example.bankcards.exception.ConflictErrorException;
 import com.example.bankcards.exception.GlobalExceptionHandler;
 import com.example.bankcards.exception.NotEnoughMoneyException;
+import com.example.bankcards.service.CardExportService;
 import com.example.bankcards.service.CardService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import jakarta.annotation.Resource;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -51,6 +64,9 @@ class CardControllerTest {
     @MockBean
     private CardService cardService;
 
+    @MockBean
+    private CardExportService cardExportService;
+
     private Card buildCard(String username, long id) {
         Card card = new Card();
         card.setId(id);
@@ -83,6 +99,46 @@ class CardControllerTest {
                     .andDo(print());
         }
 
+        @Test
+        @WithMockUser(username = "user1", roles = "USER")
+        void getMyCards_Slice_Success() throws Exception {
+            CardDTO dto = new CardDTO(buildCard("user1", 1L), "**** 1111");
+            when(cardService.getMyCardsSlice(eq("user1"), any(Pageable.class)))
+                    .thenReturn(new SliceImpl<>(List.of(dto), PageRequest.of(0, 1), true));
+
+            mockMvc.perform(get("/api/cards").param("slice", "true").param("size", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].owner").value("user1"))
+                    .andExpect(jsonPath("$.last").value(false))
+                    .andExpect(jsonPath("$.totalElements").doesNotExist())
+                    .andDo(print());
+        }
+
+        @Test
+        @WithMockUser(username = "user1", roles = "USER")
+        void getMyCards_SliceWithSearch_ShouldReturn400() throws Exception {
+            mockMvc.perform(get("/api/cards").param("slice", "true").param("search", "1111"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.errors[0]").value("Параметр search нельзя использовать вместе с slice=true"))
+                    .andDo(print());
+
+            verifyNoInteractions(cardService);
+        }
+
+        @Test
+        @WithMockUser(username = "user1", roles = "USER")
+        void getSummary_Success() throws Exception {
+            when(cardService.getSummary("user1")).thenReturn(new CardSummaryDTO(
+                    BigDecimal.valueOf(1500), 2, Map.of(CardStatus.ACTIVE, 2L)));
+
+            mockMvc.perform(get("/api/cards/summary"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalBalance").value(1500))
+                    .andExpect(jsonPath("$.totalCards").value(2))
+                    .andExpect(jsonPath("$.cardsByStatus.ACTIVE").value(2))
+                    .andDo(print());
+        }
+
         @Test
         @WithMockUser(username = "user1", roles = "USER")
         void getMyCard_Success() throws Exception {
@@ -95,6 +151,44 @@ class CardControllerTest {
                     .andDo(print());
         }
 
+        @Test
+        @WithMockUser(username = "user1", roles = "USER")
+        void getMyCard_ShouldReturnETag() throws Exception {
+            CardDTO dto = new CardDTO(buildCard("user1", 1L), "**** 2222");
+            when(cardService.getCardVersion("user1", 1L)).thenReturn(7L);
+            when(cardService.getMyCard("user1", 1L)).thenReturn(dto);
+
+            mockMvc.perform(get("/api/cards/1"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"1-7\""))
+                    .andDo(print());
+        }
+
+        @Test
+        @WithMockUser(username = "user1", roles = "USER")
+        void getMyCard_NotModified_ShouldSkipLoading() throws Exception {
+            when(cardService.getCardVersion("user1", 1L)).thenReturn(7L);
+
+            mockMvc.perform(get("/api/cards/1").header("If-None-Match", "\"1-7\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""))
+                    .andDo(print());
+
+            verify(cardService, never()).getMyCard(any(), any());
+        }
+
+        @Test
+        @WithMockUser(username = "user1", roles = "USER")
+        void getBalance_NotModified_ShouldSkipLoading() throws Exception {
+            when(cardService.getCardVersion("user1", 1L)).thenReturn(3L);
+
+            mockMvc.perform(get("/api/cards/1/balance").header("If-None-Match", "\"1-3\""))
+                    .andExpect(status().isNotModified())
+                    .andDo(print());
+
+            verify(cardService, never()).getBalance(any(), any());
+        }
+
         @Test
         @WithMockUser(username = "user1", roles = "USER")
         void getMyCard_NotFound() throws Exception {
@@ -357,5 +451,114 @@ class CardControllerTest {
                     .andExpect(jsonPath("$.content[0].owner").value("user1"))
                     .andDo(print());
         }
+
+        @Test
+        @WithMockUser(roles = "ADMIN")
+        void getAllCards_Stream_Success() throws Exception {
+            doAnswer(inv -> {
+                inv.getArgument(1, OutputStream.class)
+                        .write("{\"content\":[{\"owner\":\"user1\"}]}".getBytes(StandardCharsets.UTF_8));
+                return null;
+            }).when(cardExportService).writeAllCards(any(Pageable.class), any(OutputStream.class));
+
+            MvcResult result = mockMvc.perform(get("/api/cards/all").param("stream", "true").param("size", "50000"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist("Content-Encoding"))
+                    // Заголовки безопасности записаны до того, как поток выгрузки закоммитил ответ
+                    .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                    .andExpect(jsonPath("$.content[0].owner").value("user1"))
+                    .andDo(print());
+
+            verify(cardExportService).writeAllCards(argThat(p -> p.getPageSize() == 50000), any(OutputStream.class));
+        }
+
+        @Test
+        @WithMockUser(roles = "ADMIN")
+        void getAllCards_StreamGzip_ShouldCompress() throws Exception {
+            doAnswer(inv -> {
+                inv.getArgument(1, OutputStream.class)
+                        .write("{\"content\":[]}".getBytes(StandardCharsets.UTF_8));
+                return null;
+            }).when(cardExportService).writeAllCards(any(Pageable.class), any(OutputStream.class));
+
+            MvcResult result = mockMvc.perform(get("/api/cards/all").param("stream", "true")
+                            .header("Accept-Encoding", "gzip"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            byte[] body = mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Content-Encoding", "gzip"))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8))
+                        .isEqualTo("{\"content\":[]}");
+            }
+        }
+
+        @ParameterizedTest(name = "[{index}] {0}")
+        @CsvSource(delimiter = '|', value = {
+                "gzip;q=0.5, br | true",
+                "br, * | true",
+                "GZIP;Q=1 | true",
+                "gzip;q=0 | false",
+                "br, gzip;q=0.000 | false",
+                "*;q=0 | false",
+                "x-gzip | false",
+                "identity | false"
+        })
+        @WithMockUser(roles = "ADMIN")
+        void getAllCards_StreamAcceptEncoding_ShouldRespectQuality(String acceptEncoding, boolean gzip) throws Exception {
+            MvcResult result = mockMvc.perform(get("/api/cards/all").param("stream", "true")
+                            .header("Accept-Encoding", acceptEncoding))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(gzip ? header().string("Content-Encoding", "gzip")
+                            : header().doesNotExist("Content-Encoding"));
+        }
+
+        @Test
+        @WithMockUser(roles = "ADMIN")
+        void getBlockRequests_Success() throws Exception {
+            Card card = buildCard("user1", 1L);
+            card.setBlockRequest(true);
+            CardDTO dto = new CardDTO(card, "**** 5555");
+            when(cardService.getPendingBlockRequests(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(dto)));
+
+            mockMvc.perform(get("/api/cards/block-requests"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].maskNumber").value("**** 5555"))
+                    .andExpect(jsonPath("$.content[0].blockRequest").value(true))
+                    .andDo(print());
+        }
+
+        @Test
+        @WithMockUser(roles = "ADMIN")
+        void processBlockRequests_Success() throws Exception {
+            Card card = buildCard("user1", 1L);
+            card.setStatus(CardStatus.BLOCKED);
+            when(cardService.processNextBlockRequests(5)).thenReturn(List.of(new CardDTO(card, "**** 6666")));
+
+            mockMvc.perform(post("/api/cards/block-requests/process").param("limit", "5"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.blocked[0].status").value("BLOCKED"))
+                    .andDo(print());
+        }
+
+        @Test
+        @WithMockUser(username = "user1", roles = "USER")
+        void processBlockRequests_User_ShouldReturn403() throws Exception {
+            mockMvc.perform(post("/api/cards/block-requests/process"))
+                    .andExpect(status().isForbidden())
+                    .andDo(print());
+        }
     }
 }
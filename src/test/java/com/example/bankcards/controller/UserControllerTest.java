@@ -1,6 +1,9 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.UserDeletionDTO;
 import com.example.bankcards.dto.UserDTO;
+import com.example.bankcards.dto.UserSearchDTO;
+import com.example.bankcards.dto.UserSearchPageDTO;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.service.UserService;
@@ -16,6 +19,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -25,6 +31,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -99,6 +106,47 @@ class UserControllerTest {
                     .andDo(print());
         }
 
+        @Test
+        @WithMockUser(roles = "ADMIN")
+        void getAllUsers_Slice_ShouldReturn200() throws Exception {
+            Slice<UserDTO> slice = new SliceImpl<>(
+                    List.of(new UserDTO("user1", Role.USER)), PageRequest.of(0, 1), true
+            );
+
+            when(userService.getAllUsersSlice(any())).thenReturn(slice);
+
+            mockMvc.perform(get("/api/users").param("slice", "true"))
+                    .andExpectAll(
+                            status().isOk(),
+                            jsonPath("$.users.content[0].username").value("user1"),
+                            jsonPath("$.users.last").value(false),
+                            jsonPath("$.users.totalElements").doesNotExist()
+                    )
+                    .andDo(print());
+        }
+
+        @Test
+        @WithMockUser(roles = "ADMIN")
+        void getAllUsers_Search_ShouldReturnKeysetPage() throws Exception {
+            UserSearchPageDTO page = new UserSearchPageDTO(
+                    List.of(new UserSearchDTO(1L, "user1", Role.USER, 2L)), "user1");
+
+            when(userService.searchUsers(eq("us"), eq("user0"), eq(1), eq(true))).thenReturn(page);
+
+            mockMvc.perform(get("/api/users")
+                            .param("search", "us")
+                            .param("after", "user0")
+                            .param("size", "1")
+                            .param("withCards", "true"))
+                    .andExpectAll(
+                            status().isOk(),
+                            jsonPath("$.users[0].username").value("user1"),
+                            jsonPath("$.users[0].cards").value(2),
+                            jsonPath("$.next").value("user1")
+                    )
+                    .andDo(print());
+        }
+
         @Test
         @WithMockUser(roles = "USER")
         void getAllUsers_User_ShouldReturn403() throws Exception {
@@ -148,10 +196,14 @@ class UserControllerTest {
     @DisplayName("Тесты метода deleteUser")
     class DeleteUserTests {
 
+        private UserDeletionDTO deletion(UserDeletionDTO.Status status) {
+            return new UserDeletionDTO(1L, "user1", status, 100, 5, null, null);
+        }
+
         @Test
         @WithMockUser(roles = "ADMIN")
         void deleteUser_Valid_ShouldReturn204() throws Exception {
-            when(userService.deleteUser(1L)).thenReturn(true);
+            when(userService.deleteUser(1L)).thenReturn(deletion(UserDeletionDTO.Status.DONE));
 
             mockMvc.perform(delete("/api/users/1/delete"))
                     .andExpectAll(
@@ -164,7 +216,7 @@ class UserControllerTest {
         @Test
         @WithMockUser(roles = "ADMIN")
         void deleteUser_Conflict_ShouldReturn409() throws Exception {
-            when(userService.deleteUser(1L)).thenReturn(false);
+            when(userService.deleteUser(1L)).thenReturn(deletion(UserDeletionDTO.Status.FAILED));
 
             mockMvc.perform(delete("/api/users/1/delete"))
                     .andExpectAll(
@@ -175,6 +227,35 @@ class UserControllerTest {
                     .andDo(print());
         }
 
+        @Test
+        @WithMockUser(roles = "ADMIN")
+        void deleteUser_Large_ShouldReturn202() throws Exception {
+            when(userService.deleteUser(1L)).thenReturn(deletion(UserDeletionDTO.Status.RUNNING));
+
+            mockMvc.perform(delete("/api/users/1/delete"))
+                    .andExpectAll(
+                            status().isAccepted(),
+                            header().string("Location", "/api/users/1/deletion"),
+                            jsonPath("$.status").value("RUNNING"),
+                            jsonPath("$.cardsDeleted").value(5)
+                    )
+                    .andDo(print());
+        }
+
+        @Test
+        @WithMockUser(roles = "ADMIN")
+        void getDeletion_ShouldReturnProgress() throws Exception {
+            when(userService.getDeletion(1L)).thenReturn(deletion(UserDeletionDTO.Status.RUNNING));
+
+            mockMvc.perform(get("/api/users/1/deletion"))
+                    .andExpectAll(
+                            status().isOk(),
+                            jsonPath("$.username").value("user1"),
+                            jsonPath("$.transactionsDeleted").value(100)
+                    )
+                    .andDo(print());
+        }
+
         @Test
         @WithMockUser(roles = "ADMIN")
         void deleteUser_NotFound_ShouldReturn404() throws Exception {
@@ -0,0 +1,127 @@
+package com.example.bankcards.datagen;
+
+import com.example.bankcards.config.DataGenProperties;
+import com.example.bankcards.util.CardNumber;
+import jakarta.annotation.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:dataGenTest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;MODE=PostgreSQL")
+@DisplayName("Тесты для DataGenerator")
+class DataGeneratorTest {
+
+    @Resource
+    private DataGenerator generator;
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    @Resource
+    private CardNumber cardNumber;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM card_transactions");
+        jdbcTemplate.update("DELETE FROM cards");
+        jdbcTemplate.update("DELETE FROM refresh_token");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    private DataGenProperties properties(int threads) {
+        DataGenProperties properties = new DataGenProperties();
+        properties.setUsers(50);
+        properties.setCardsPerUser(3);
+        properties.setTransactionsPerCard(4);
+        properties.setRefreshTokensPerUser(2);
+        properties.setThreads(threads);
+        properties.setChunkSize(7);
+        properties.setBatchSize(10);
+        properties.setReferenceTime(LocalDateTime.of(2024, 1, 1, 0, 0));
+        return properties;
+    }
+
+    @Test
+    @DisplayName("Создаёт заданное число строк со связями внутри одного владельца")
+    void generate_CountsAndReferences() throws Exception {
+        generator.generate(properties(3));
+
+        assertThat(count("SELECT COUNT(*) FROM users")).isEqualTo(50);
+        assertThat(count("SELECT COUNT(*) FROM cards")).isEqualTo(150);
+        assertThat(count("SELECT COUNT(*) FROM card_transactions")).isEqualTo(600);
+        assertThat(count("SELECT COUNT(*) FROM refresh_token")).isEqualTo(100);
+        assertThat(count("SELECT COUNT(*) FROM card_transactions t JOIN cards f ON f.id = t.from_card_id "
+                + "JOIN cards r ON r.id = t.to_card_id WHERE f.owner_id <> r.owner_id OR f.id = r.id")).isZero();
+        assertThat(count("SELECT COUNT(*) FROM refresh_token t LEFT JOIN users u ON u.username = t.username "
+                + "WHERE u.id IS NULL")).isZero();
+
+        // Счётчик identity переставлен за сгенерированные id
+        jdbcTemplate.update("INSERT INTO users (username, encrypted_password, role) VALUES ('after', 'x', 'USER')");
+        assertThat(count("SELECT id FROM users WHERE username = 'after'")).isEqualTo(51);
+    }
+
+    @Test
+    @DisplayName("Номера карт уникальны и проходят проверку по Луну")
+    void generate_CardNumbersValid() throws Exception {
+        generator.generate(properties(2));
+
+        List<String> numbers = jdbcTemplate.queryForList("SELECT encrypted_number FROM cards", String.class).stream()
+                .map(cardNumber::getRaw)
+                .toList();
+        assertThat(numbers).hasSize(150).doesNotHaveDuplicates()
+                .allSatisfy(number -> {
+                    assertThat(number).hasSize(16).containsOnlyDigits();
+                    assertThat(DataGenerator.luhnCheckDigit(number.substring(0, 15)))
+                            .isEqualTo(number.charAt(15) - '0');
+                });
+    }
+
+    @Test
+    @DisplayName("Номера карт не повторяются на миллионе id")
+    void rawCardNumber_Unique() {
+        Set<String> numbers = new HashSet<>();
+        for (long id = 1; id <= 1_000_000; id++) {
+            assertThat(numbers.add(DataGenerator.rawCardNumber(id))).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("При том же seed данные не зависят от числа потоков")
+    void generate_DeterministicAcrossThreads() throws Exception {
+        generator.generate(properties(4));
+        List<String> parallel = snapshot();
+        cleanUp();
+
+        generator.generate(properties(1));
+
+        assertThat(snapshot()).isEqualTo(parallel);
+    }
+
+    private List<String> snapshot() {
+        return jdbcTemplate.queryForList("""
+                SELECT CONCAT_WS('|', id, username, role) FROM users
+                UNION ALL SELECT CONCAT_WS('|', id, encrypted_number, owner_id, expiry_date, status, balance,
+                    block_request, block_requested_at, created_at) FROM cards
+                UNION ALL SELECT CONCAT_WS('|', id, from_card_id, to_card_id, amount, timestamp, description)
+                    FROM card_transactions
+                UNION ALL SELECT CONCAT_WS('|', RAWTOHEX(token_hash), username, expiry_date, RAWTOHEX(family_id),
+                    used_at) FROM refresh_token
+                ORDER BY 1
+                """, String.class);
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
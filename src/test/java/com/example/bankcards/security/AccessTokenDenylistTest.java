@@ -0,0 +1,95 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Тесты для AccessTokenDenylist")
+class AccessTokenDenylistTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private AccessTokenDenylist denylist() {
+        return new AccessTokenDenylist(revokedTokenRepository, meterRegistry, 1000);
+    }
+
+    @Test
+    @DisplayName("Отозванный токен распознаётся, остальные - нет")
+    void revoke_MarksOnlyThatToken() {
+        AccessTokenDenylist denylist = denylist();
+
+        denylist.revoke("jti-1", new Date(System.currentTimeMillis() + 60_000));
+
+        assertThat(denylist.isRevoked("jti-1")).isTrue();
+        assertThat(denylist.isRevoked("jti-2")).isFalse();
+        assertThat(denylist.isRevoked(null)).isFalse();
+        verify(revokedTokenRepository).insertIfAbsent(eq("jti-1"), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Фильтр Блума не даёт ложных отрицаний на большом наборе")
+    void isRevoked_NoFalseNegatives() {
+        AccessTokenDenylist denylist = denylist();
+        Date expiresAt = new Date(System.currentTimeMillis() + 60_000);
+        List<String> revoked = java.util.stream.IntStream.range(0, 5000)
+                .mapToObj(i -> UUID.randomUUID().toString())
+                .toList();
+
+        revoked.forEach(jti -> denylist.revoke(jti, expiresAt));
+
+        assertThat(revoked).allMatch(denylist::isRevoked);
+        assertThat(denylist.isRevoked(UUID.randomUUID().toString())).isFalse();
+    }
+
+    @Test
+    @DisplayName("При старте отозванные токены загружаются из БД")
+    void constructor_LoadsFromDatabase() {
+        when(revokedTokenRepository.findAllByExpiresAtAfter(any())).thenReturn(List.of(
+                new RevokedToken("jti-db", LocalDateTime.now().plusMinutes(5))));
+
+        AccessTokenDenylist denylist = denylist();
+
+        assertThat(denylist.isRevoked("jti-db")).isTrue();
+        assertThat(meterRegistry.get("revoked_tokens.size").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Запись перестаёт действовать после истечения токена и выбрасывается при пересборке")
+    void refresh_DropsExpiredEntries() {
+        AccessTokenDenylist denylist = denylist();
+        denylist.revoke("expired", new Date(System.currentTimeMillis() - 1_000));
+        denylist.revoke("active", new Date(System.currentTimeMillis() + 60_000));
+
+        assertThat(denylist.isRevoked("expired")).isFalse();
+
+        denylist.refresh();
+
+        verify(revokedTokenRepository).deleteExpired(any());
+        assertThat(denylist.isRevoked("active")).isTrue();
+        assertThat(meterRegistry.get("revoked_tokens.size").gauge().value()).isEqualTo(1);
+    }
+}
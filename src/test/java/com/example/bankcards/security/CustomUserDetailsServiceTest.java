@@ -0,0 +1,121 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Тесты для CustomUserDetailsService")
+class CustomUserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private CustomUserDetailsService userDetailsService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserDetailsCache userDetailsCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        meterRegistry = new SimpleMeterRegistry();
+        userDetailsCache = new UserDetailsCache(Duration.ofMinutes(1), Duration.ofMinutes(1), 100, meterRegistry);
+        ReflectionTestUtils.setField(userDetailsService, "userDetailsCache", userDetailsCache);
+    }
+
+    @Test
+    @DisplayName("Повторная загрузка пользователя берётся из кэша")
+    void loadUserByUsername_CachesUser() {
+        when(userRepository.findByUsername("user1"))
+                .thenReturn(Optional.of(new User(1L, "user1", "hash", Role.USER)));
+
+        userDetailsService.loadUserByUsername("user1");
+        UserDetails userDetails = userDetailsService.loadUserByUsername("user1");
+
+        assertThat(userDetails.getUsername()).isEqualTo("user1");
+        assertThat(userDetails.getAuthorities()).extracting("authority").containsExactly("ROLE_USER");
+        verify(userRepository, times(1)).findByUsername("user1");
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "users.details").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Стирание пароля после логина не портит закэшированного пользователя")
+    void loadUserByUsername_ReturnsFreshInstance() {
+        when(userRepository.findByUsername("user1"))
+                .thenReturn(Optional.of(new User(1L, "user1", "hash", Role.USER)));
+
+        ((CredentialsContainer) userDetailsService.loadUserByUsername("user1")).eraseCredentials();
+
+        assertThat(userDetailsService.loadUserByUsername("user1").getPassword()).isEqualTo("hash");
+    }
+
+    @Test
+    @DisplayName("Неизвестное имя кэшируется до инвалидации")
+    void loadUserByUsername_CachesUnknownUsername() {
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername("ghost"))
+                .isInstanceOf(UsernameNotFoundException.class);
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername("ghost"))
+                .isInstanceOf(UsernameNotFoundException.class);
+        verify(userRepository, times(1)).findByUsername("ghost");
+
+        when(userRepository.findByUsername("ghost"))
+                .thenReturn(Optional.of(new User(2L, "ghost", "hash", Role.USER)));
+        userDetailsCache.evict("ghost");
+
+        assertThat(userDetailsService.loadUserByUsername("ghost").getUsername()).isEqualTo("ghost");
+    }
+
+    @Test
+    @DisplayName("Ошибка БД пробрасывается как есть и не остаётся в кэше")
+    void loadUserByUsername_FailedLoadNotCached() {
+        when(userRepository.findByUsername("user1"))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(Optional.of(new User(1L, "user1", "hash", Role.USER)));
+
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername("user1"))
+                .isInstanceOf(QueryTimeoutException.class);
+
+        assertThat(userDetailsService.loadUserByUsername("user1").getUsername()).isEqualTo("user1");
+        verify(userRepository, times(2)).findByUsername("user1");
+    }
+
+    @Test
+    @DisplayName("Пересчитанный хэш сохраняется и сбрасывает кэш")
+    void updatePassword_StoresNewHash() {
+        when(userRepository.findByUsername("user1"))
+                .thenReturn(Optional.of(new User(1L, "user1", "oldHash", Role.USER)));
+        UserDetails userDetails = userDetailsService.loadUserByUsername("user1");
+
+        UserDetails updated = userDetailsService.updatePassword(userDetails, "newHash");
+
+        assertThat(updated.getPassword()).isEqualTo("newHash");
+        assertThat(updated.getAuthorities()).isEqualTo(userDetails.getAuthorities());
+        verify(userRepository).updateEncryptedPassword("user1", "newHash");
+
+        userDetailsService.loadUserByUsername("user1");
+        verify(userRepository, times(2)).findByUsername("user1");
+    }
+}
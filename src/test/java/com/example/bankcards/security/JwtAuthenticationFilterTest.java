@@ -0,0 +1,163 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.service.JwtKeyRing;
+import com.example.bankcards.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Тесты для JwtAuthenticationFilter")
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-0123456789";
+
+    @Mock
+    private CustomUserDetailsService userDetailsService;
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private JwtService jwtService;
+    private RevokedUserRegistry revokedUserRegistry;
+    private AccessTokenDenylist accessTokenDenylist;
+    private SimpleMeterRegistry meterRegistry;
+    private String adminToken;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+
+        jwtService = new JwtService(new JwtKeyRing(
+                new ByteArrayResource(SECRET.getBytes(StandardCharsets.UTF_8)), null, "HS256",
+                Duration.ofDays(1), Duration.ofHours(1), Duration.ZERO, Duration.ZERO, Duration.ZERO), 100);
+        jwtService.jwtExpirationAccess = 60_000;
+        revokedUserRegistry = new RevokedUserRegistry(60_000, 100);
+        meterRegistry = new SimpleMeterRegistry();
+        accessTokenDenylist = new AccessTokenDenylist(revokedTokenRepository, meterRegistry, 100);
+
+        adminToken = jwtService.generateAccessToken(new User(1L, "admin", "pass", Role.ADMIN));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletResponse doFilter(boolean stateless, String token) throws Exception {
+        JwtAuthenticationFilter filter =
+                new JwtAuthenticationFilter(jwtService, userDetailsService, revokedUserRegistry,
+                        accessTokenDenylist, meterRegistry, stateless);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Nested
+    @DisplayName("Режим с загрузкой пользователя из БД")
+    class DatabaseModeTests {
+
+        @Test
+        @DisplayName("Загружает пользователя и аутентифицирует запрос")
+        void filter_LoadsUser() throws Exception {
+            when(userDetailsService.loadUserByUsername("admin")).thenReturn(
+                    org.springframework.security.core.userdetails.User
+                            .withUsername("admin").password("x").roles("ADMIN").build());
+
+            MockHttpServletResponse response = doFilter(false, adminToken);
+
+            assertThat(response.getStatus()).isEqualTo(200);
+            assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("admin");
+            verify(userDetailsService).loadUserByUsername("admin");
+        }
+
+        @Test
+        @DisplayName("Возвращает 401 для отозванного при logout токена")
+        void filter_RevokedToken_Unauthorized() throws Exception {
+            Claims claims = jwtService.parseClaims(adminToken);
+            accessTokenDenylist.revoke(claims.getId(), claims.getExpiration());
+
+            assertThat(doFilter(false, adminToken).getStatus()).isEqualTo(401);
+            verifyNoInteractions(userDetailsService);
+        }
+
+        @Test
+        @DisplayName("Возвращает 401 для refresh-токена в заголовке Authorization")
+        void filter_RefreshToken_Unauthorized() throws Exception {
+            jwtService.jwtExpirationRefresh = 120_000;
+            String refreshToken = jwtService.generateRefreshToken(new User(1L, "admin", "pass", Role.ADMIN));
+
+            assertThat(doFilter(false, refreshToken).getStatus()).isEqualTo(401);
+            assertThat(doFilter(true, refreshToken).getStatus()).isEqualTo(401);
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+            verifyNoInteractions(userDetailsService);
+        }
+
+        @Test
+        @DisplayName("Возвращает 403, если пользователь удалён")
+        void filter_UnknownUser_Forbidden() throws Exception {
+            when(userDetailsService.loadUserByUsername(any())).thenThrow(new UsernameNotFoundException("Юзер не найден"));
+
+            assertThat(doFilter(false, adminToken).getStatus()).isEqualTo(403);
+        }
+    }
+
+    @Nested
+    @DisplayName("Stateless-режим")
+    class StatelessModeTests {
+
+        @Test
+        @DisplayName("Берёт пользователя и роль из claims без обращения к БД")
+        void filter_BuildsAuthenticationFromClaims() throws Exception {
+            MockHttpServletResponse response = doFilter(true, adminToken);
+
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            assertThat(response.getStatus()).isEqualTo(200);
+            assertThat(authentication.getName()).isEqualTo("admin");
+            assertThat(AuthorityUtils.authorityListToSet(authentication.getAuthorities()))
+                    .containsExactly("ROLE_ADMIN");
+            verifyNoInteractions(userDetailsService);
+        }
+
+        @Test
+        @DisplayName("Отклоняет токены пользователя, выпущенные до отзыва")
+        void filter_RevokedUser_Forbidden() throws Exception {
+            revokedUserRegistry.revoke("admin");
+
+            assertThat(doFilter(true, adminToken).getStatus()).isEqualTo(403);
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        }
+
+        @Test
+        @DisplayName("Возвращает 401 для невалидного токена")
+        void filter_InvalidToken_Unauthorized() throws Exception {
+            assertThat(doFilter(true, adminToken + "x").getStatus()).isEqualTo(401);
+            assertThat(meterRegistry.get("jwt.verify").tag("result", "invalid").timer().count()).isEqualTo(1);
+        }
+    }
+}
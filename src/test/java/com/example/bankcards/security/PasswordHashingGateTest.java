@@ -0,0 +1,65 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.AuthServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("Тесты для PasswordHashingGate")
+class PasswordHashingGateTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PasswordHashingGate gate;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        gate = new PasswordHashingGate(1, Duration.ofMillis(50), false, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Выполняет задачу и возвращает результат")
+    void run_ReturnsResult() {
+        assertThat(gate.run("login", () -> "hash")).isEqualTo("hash");
+        assertThat(meterRegistry.get("password_hashing.active").gauge().value()).isZero();
+        assertThat(meterRegistry.get("password_hashing.duration").tag("operation", "login").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Отклоняет запрос, когда все разрешения заняты")
+    void run_Saturated_Rejects() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> gate.run("login", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(meterRegistry.get("password_hashing.active").gauge().value()).isEqualTo(1);
+            assertThatThrownBy(() -> gate.run("login", () -> "hash"))
+                    .isInstanceOf(AuthServiceBusyException.class);
+            assertThat(meterRegistry.get("password_hashing.rejected").counter().count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("Тесты для RateLimiter и RateLimitFilter")
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitProperties properties;
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new RateLimitProperties();
+        properties.setMaxKeys(100);
+        rateLimiter = new RateLimiter(properties, meterRegistry);
+    }
+
+    @Nested
+    @DisplayName("Алгоритм GCRA")
+    class LimiterTests {
+
+        @Test
+        @DisplayName("Пропускает capacity запросов подряд и затем отказывает")
+        void tryAcquire_AllowsBurstThenRejects() {
+            // 3 запроса в секунду: интервал 1/3 с, допуск на всплеск 2/3 с
+            long interval = SECOND / 3;
+            long burst = SECOND - interval;
+            long now = 1_000 * SECOND;
+
+            assertThat(rateLimiter.tryAcquire("k", interval, burst, now)).isZero();
+            assertThat(rateLimiter.tryAcquire("k", interval, burst, now)).isZero();
+            assertThat(rateLimiter.tryAcquire("k", interval, burst, now)).isZero();
+            assertThat(rateLimiter.tryAcquire("k", interval, burst, now)).isCloseTo(interval, within(1L));
+
+            assertThat(rateLimiter.tryAcquire("k", interval, burst, now + interval)).isZero();
+            assertThat(meterRegistry.get("rate_limit.rejected").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Под нагрузкой из нескольких потоков не пропускает больше лимита")
+        void tryAcquire_Concurrent_NeverExceedsCapacity() throws Exception {
+            long interval = SECOND;
+            long burst = 99 * SECOND;
+            long now = 1_000 * SECOND;
+            AtomicInteger allowed = new AtomicInteger();
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> futures = new java.util.ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < 100; i++) {
+                            if (rateLimiter.tryAcquire("k", interval, burst, now) == 0) {
+                                allowed.incrementAndGet();
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            assertThat(allowed.get()).isEqualTo(100);
+        }
+
+        @Test
+        @DisplayName("Очистка удаляет только полные вёдра")
+        void sweep_RemovesOnlyIdleKeys() {
+            long now = 1_000 * SECOND;
+            rateLimiter.tryAcquire("idle", SECOND, 0, now);
+            rateLimiter.tryAcquire("busy", 10 * SECOND, 0, now);
+
+            rateLimiter.sweep(now + 2 * SECOND);
+
+            assertThat(rateLimiter.size()).isEqualTo(1);
+            assertThat(rateLimiter.tryAcquire("busy", 10 * SECOND, 0, now + 2 * SECOND)).isPositive();
+        }
+
+        @Test
+        @DisplayName("При переполнении вытесняет редкие ключи, а лимиты активных сохраняются")
+        void tryAcquire_ManyKeys_EvictsColdKeys() {
+            properties.setMaxKeys(100);
+            RateLimiter limiter = new RateLimiter(properties, meterRegistry);
+            long now = 1_000 * SECOND;
+            limiter.tryAcquire("hot", 10 * SECOND, 0, now);
+
+            // Активный клиент продолжает слать запросы, пока карту забивают новыми ключами
+            for (int i = 0; i < 10_000; i++) {
+                limiter.tryAcquire("new-" + i, 10 * SECOND, 0, now);
+                if (i % 10 == 0) {
+                    limiter.tryAcquire("hot", 10 * SECOND, 0, now);
+                }
+            }
+
+            assertThat(limiter.size()).isLessThanOrEqualTo(100);
+            assertThat(meterRegistry.get("rate_limit.evicted").counter().count()).isPositive();
+            assertThat(limiter.tryAcquire("hot", 10 * SECOND, 0, now)).isPositive();
+        }
+    }
+
+    @Nested
+    @DisplayName("Фильтр")
+    class FilterTests {
+
+        private RateLimitFilter filter() {
+            RateLimitProperties.Route route = new RateLimitProperties.Route();
+            route.setMethod("POST");
+            route.setPath("/api/cards/transaction");
+            route.setCapacity(1);
+            route.setPeriod(Duration.ofMinutes(1));
+            RateLimitProperties.Route api = new RateLimitProperties.Route();
+            api.setPath("/api/**");
+            api.setCapacity(100);
+            properties.setRoutes(List.of(route, api));
+            return new RateLimitFilter(rateLimiter, properties);
+        }
+
+        private MockHttpServletResponse perform(RateLimitFilter filter, String method, String uri) throws Exception {
+            MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+            request.setServletPath(uri);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            return response;
+        }
+
+        @Test
+        @DisplayName("Возвращает 429 с Retry-After после исчерпания лимита пользователя")
+        void filter_LimitsPerUser() throws Exception {
+            RateLimitFilter filter = filter();
+            try {
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken("user1", null, List.of()));
+                assertThat(perform(filter, "POST", "/api/cards/transaction").getStatus()).isEqualTo(200);
+
+                MockHttpServletResponse limited = perform(filter, "POST", "/api/cards/transaction");
+                assertThat(limited.getStatus()).isEqualTo(429);
+                assertThat(limited.getHeader("Retry-After")).isEqualTo("60");
+
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken("user2", null, List.of()));
+                assertThat(perform(filter, "POST", "/api/cards/transaction").getStatus()).isEqualTo(200);
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        }
+
+        @Test
+        @DisplayName("Лимит маршрута не расходуется запросами к другим маршрутам")
+        void filter_RoutesAreIndependent() throws Exception {
+            RateLimitFilter filter = filter();
+
+            for (int i = 0; i < 3; i++) {
+                assertThat(perform(filter, "GET", "/api/cards").getStatus()).isEqualTo(200);
+            }
+            assertThat(perform(filter, "POST", "/api/cards/transaction").getStatus()).isEqualTo(200);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.util.CardNumber;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("CardExportService — юнит-тесты")
+class CardExportServiceTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private TypedQuery<Card> query;
+
+    @Mock
+    private CardNumber cardNumber;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private CardExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        exportService = new CardExportService(objectMapper, cardNumber, 2);
+        ReflectionTestUtils.setField(exportService, "entityManager", entityManager);
+
+        when(entityManager.createQuery(anyString(), eq(Card.class))).thenReturn(query);
+        when(query.setHint(anyString(), any())).thenReturn(query);
+        when(query.setFirstResult(anyInt())).thenReturn(query);
+        when(query.setMaxResults(anyInt())).thenReturn(query);
+        when(cardNumber.getMasked(anyString())).thenReturn("**** **** **** 1234");
+    }
+
+    private Card card(long id) {
+        Card card = new Card();
+        card.setId(id);
+        card.setOwner(new User(1L, "user1", "pass", null));
+        card.setEncryptedNumber("encrypted");
+        card.setExpiryDate(LocalDate.of(2030, 1, 1));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(BigDecimal.TEN);
+        return card;
+    }
+
+    @Test
+    void writeAllCards_ShouldStreamPageAsJson() throws Exception {
+        when(query.getResultStream()).thenReturn(IntStream.rangeClosed(1, 5).mapToObj(this::card));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.writeAllCards(PageRequest.of(1, 5), out);
+
+        JsonNode json = objectMapper.readTree(out.toByteArray());
+        assertThat(json.get("page").asInt()).isEqualTo(1);
+        assertThat(json.get("content")).hasSize(5);
+        assertThat(json.get("content").get(0).get("owner").asText()).isEqualTo("user1");
+        assertThat(json.get("content").get(0).get("maskNumber").asText()).isEqualTo("**** **** **** 1234");
+        verify(query).setFirstResult(5);
+        verify(query).setMaxResults(5);
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void writeAllCards_ShouldIgnoreUnknownSortProperties() throws Exception {
+        when(query.getResultStream()).thenReturn(IntStream.rangeClosed(1, 1).mapToObj(this::card));
+
+        exportService.writeAllCards(PageRequest.of(0, 10, Sort.by("balance").descending().and(Sort.by("owner.password"))),
+                new ByteArrayOutputStream());
+
+        verify(entityManager).createQuery(
+                "select c from Card c join fetch c.owner order by c.balance desc, c.id", Card.class);
+    }
+}
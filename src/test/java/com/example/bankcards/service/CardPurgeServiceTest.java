@@ -0,0 +1,76 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Тесты для CardPurgeService")
+class CardPurgeServiceTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardTransactionRepository transactionRepository;
+
+    @InjectMocks
+    private CardPurgeService cardPurgeService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(cardPurgeService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cardPurgeService, "retention", Duration.ofDays(30));
+        ReflectionTestUtils.setField(cardPurgeService, "batchSize", 100);
+        ReflectionTestUtils.setField(cardPurgeService, "maxBatches", 5);
+    }
+
+    @Test
+    @DisplayName("Сначала удаляет переводы, затем карты, старше срока хранения")
+    void purgeDeleted_TransactionsThenCards() {
+        when(transactionRepository.purgeForDeletedCardsBatch(any(), eq(100))).thenReturn(100, 20);
+        when(cardRepository.purgeDeletedBatch(any(), eq(100))).thenReturn(100, 7);
+
+        assertThat(cardPurgeService.purgeDeleted()).isEqualTo(107);
+
+        ArgumentCaptor<LocalDateTime> before = ArgumentCaptor.forClass(LocalDateTime.class);
+        InOrder inOrder = inOrder(transactionRepository, cardRepository);
+        inOrder.verify(transactionRepository, times(2)).purgeForDeletedCardsBatch(before.capture(), eq(100));
+        inOrder.verify(cardRepository, times(2)).purgeDeletedBatch(any(), eq(100));
+        assertThat(before.getValue()).isCloseTo(LocalDateTime.now().minusDays(30), within(5, java.time.temporal.ChronoUnit.SECONDS));
+        assertThat(meterRegistry.get("cards.purged").counter().count()).isEqualTo(107);
+    }
+
+    @Test
+    @DisplayName("Не трогает карты, пока не удалены все переводы, и соблюдает max-batches")
+    void purgeDeleted_RespectsMaxBatches() {
+        when(transactionRepository.purgeForDeletedCardsBatch(any(), eq(100))).thenReturn(100);
+
+        assertThat(cardPurgeService.purgeDeleted()).isZero();
+
+        verify(transactionRepository, times(5)).purgeForDeletedCardsBatch(any(), eq(100));
+        verifyNoInteractions(cardRepository);
+    }
+}
@@ -2,6 +2,8 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardCreateDTO;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardStatusTotal;
+import com.example.bankcards.dto.CardSummaryDTO;
 import com.example.bankcards.dto.TransactionRequestDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
@@ -16,6 +18,7 @@ import com.example.bankcards.repository.CardTransactionRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.CardService;
 import com.example.bankcards.util.CardNumber;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -27,8 +30,14 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -36,6 +45,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -55,9 +65,16 @@ class CardServiceTest {
     @Mock
     private CardNumber cardNumber;
 
+    @Mock
+    private CardSummaryCache summaryCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private CardService cardService;
 
+    private SimpleMeterRegistry meterRegistry;
     private User user;
     private Card card;
 
@@ -65,6 +82,10 @@ class CardServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
 
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(cardService, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(cardService, "meterRegistry", meterRegistry);
+
         user = new User(1L, "user1", "pass", null);
 
         card = new Card();
@@ -92,6 +113,20 @@ class CardServiceTest {
             assertThat(result).isNotEmpty();
             assertThat(result.getContent().get(0).getMaskNumber()).isEqualTo("**** **** **** 1234");
         }
+
+        @Test
+        void getMyCardsSlice_ShouldNotCount() {
+            Pageable pageable = PageRequest.of(0, 1);
+            when(cardRepository.findSliceByOwnerUsername("user1", pageable))
+                    .thenReturn(new SliceImpl<>(List.of(card), pageable, true));
+            when(cardNumber.getMasked(card.getEncryptedNumber())).thenReturn("**** **** **** 1234");
+
+            Slice<CardDTO> result = cardService.getMyCardsSlice("user1", pageable);
+
+            assertThat(result.hasNext()).isTrue();
+            assertThat(result.getContent().get(0).getMaskNumber()).isEqualTo("**** **** **** 1234");
+            verify(cardRepository, never()).findByOwnerUsername(any(), any(), any());
+        }
     }
 
     @Nested
@@ -117,6 +152,26 @@ class CardServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Тесты метода getCardVersion()")
+    class GetCardVersionTests {
+        @Test
+        void getCardVersion_Valid_ShouldReturnVersion() {
+            when(cardRepository.findVersionByIdAndOwnerUsername(1L, "user1")).thenReturn(Optional.of(4L));
+
+            assertThat(cardService.getCardVersion("user1", 1L)).isEqualTo(4L);
+        }
+
+        @Test
+        void getCardVersion_NotFound_ShouldThrow() {
+            when(cardRepository.findVersionByIdAndOwnerUsername(1L, "user1")).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> cardService.getCardVersion("user1", 1L))
+                    .isInstanceOf(CardNotFoundException.class)
+                    .hasMessage("Карта не найдена");
+        }
+    }
+
     @Nested
     @DisplayName("Тесты метода transaction()")
     class TransactionTests {
@@ -143,6 +198,9 @@ class CardServiceTest {
 
             verify(transactionRepository).save(any(CardTransaction.class));
             verify(cardRepository, times(2)).save(any(Card.class));
+            verify(summaryCache).evict("user1");
+            verify(transactionManager).commit(any());
+            assertThat(meterRegistry.get("cards.transaction").tag("outcome", "ok").timer().count()).isEqualTo(1);
         }
 
         @Test
@@ -179,6 +237,9 @@ class CardServiceTest {
             assertThatThrownBy(() -> cardService.transaction("user1", dto))
                     .isInstanceOf(NotEnoughMoneyException.class)
                     .hasMessage("Недостаточно средств");
+            verify(transactionManager).rollback(any());
+            assertThat(meterRegistry.get("cards.transaction").tag("outcome", "insufficient_funds").timer().count())
+                    .isEqualTo(1);
         }
     }
 
@@ -192,9 +253,22 @@ class CardServiceTest {
             cardService.requestBlock("user1", 1L);
 
             assertThat(card.isBlockRequest()).isTrue();
+            assertThat(card.getBlockRequestedAt()).isNotNull();
             verify(cardRepository).save(card);
         }
 
+        @Test
+        void requestBlock_Repeated_ShouldKeepQueuePosition() {
+            LocalDateTime requestedAt = LocalDateTime.now().minusDays(1);
+            card.setBlockRequest(true);
+            card.setBlockRequestedAt(requestedAt);
+            when(cardRepository.findByIdAndOwnerUsername(1L, "user1")).thenReturn(Optional.of(card));
+
+            cardService.requestBlock("user1", 1L);
+
+            assertThat(card.getBlockRequestedAt()).isEqualTo(requestedAt);
+        }
+
         @Test
         void requestBlock_AlreadyBlocked_ShouldThrow() {
             card.setStatus(CardStatus.BLOCKED);
@@ -206,6 +280,39 @@ class CardServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Тесты метода getSummary()")
+    class GetSummaryTests {
+
+        private CardStatusTotal total(CardStatus status, long cards, long balance) {
+            CardStatusTotal total = mock(CardStatusTotal.class);
+            when(total.getStatus()).thenReturn(status);
+            when(total.getCards()).thenReturn(cards);
+            when(total.getBalance()).thenReturn(BigDecimal.valueOf(balance));
+            return total;
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void getSummary_ShouldAggregateByStatus() {
+            List<CardStatusTotal> totals = List.of(
+                    total(CardStatus.ACTIVE, 2, 1500),
+                    total(CardStatus.BLOCKED, 1, 200));
+            when(cardRepository.summarizeByOwnerUsername("user1")).thenReturn(totals);
+            when(summaryCache.get(eq("user1"), any()))
+                    .thenAnswer(inv -> inv.getArgument(1, Function.class).apply("user1"));
+
+            CardSummaryDTO summary = cardService.getSummary("user1");
+
+            assertThat(summary.getTotalCards()).isEqualTo(3);
+            assertThat(summary.getTotalBalance()).isEqualByComparingTo(BigDecimal.valueOf(1700));
+            assertThat(summary.getCardsByStatus())
+                    .containsEntry(CardStatus.ACTIVE, 2L)
+                    .containsEntry(CardStatus.BLOCKED, 1L)
+                    .containsEntry(CardStatus.EXPIRED, 0L);
+        }
+    }
+
     @Nested
     @DisplayName("Тесты метода getBalance()")
     class GetBalanceTests {
@@ -293,11 +400,16 @@ class CardServiceTest {
         @Test
         void activateCard_Valid_ShouldSetStatusActive() {
             card.setStatus(CardStatus.BLOCKED);
+
+            card.setBlockRequest(true);
+            card.setBlockRequestedAt(LocalDateTime.now());
             when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
 
             cardService.activateCard(1L);
 
             assertThat(card.getStatus()).isEqualTo(CardStatus.ACTIVE);
+            assertThat(card.isBlockRequest()).isFalse();
+            assertThat(card.getBlockRequestedAt()).isNull();
         }
 
         @Test
@@ -316,17 +428,21 @@ class CardServiceTest {
     class DeleteCardTests {
 
         @Test
-        void deleteCard_Valid_ShouldCallDelete() {
-            when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
+        void deleteCard_Valid_ShouldSoftDelete() {
+            when(cardRepository.findOwnerUsernameById(1L)).thenReturn(Optional.of("user1"));
+            when(cardRepository.softDeleteById(eq(1L), any())).thenReturn(1);
 
             cardService.deleteCard(1L);
 
-            verify(cardRepository).deleteById(1L);
+            verify(cardRepository).softDeleteById(eq(1L), any());
+            verify(cardRepository, never()).deleteById(any());
+            verify(cardRepository, never()).findById(any());
+            verify(summaryCache).evict("user1");
         }
 
         @Test
         void deleteCard_NotFound_ShouldThrow() {
-            when(cardRepository.findById(1L)).thenReturn(Optional.empty());
+            when(cardRepository.findOwnerUsernameById(1L)).thenReturn(Optional.empty());
 
             assertThatThrownBy(() -> cardService.deleteCard(1L))
                     .isInstanceOf(CardNotFoundException.class)
@@ -348,5 +464,44 @@ class CardServiceTest {
             assertThat(result.getContent().get(0).getMaskNumber()).isEqualTo("**** **** **** 1234");
         }
     }
-}
 
+    @Nested
+    @DisplayName("Тесты очереди заявок на блокировку")
+    class BlockRequestQueueTests {
+
+        @Test
+        void getPendingBlockRequests_ShouldReturnPageOfDTOs() {
+            card.setBlockRequest(true);
+            when(cardRepository.findPendingBlockRequests(Pageable.unpaged())).thenReturn(new PageImpl<>(List.of(card)));
+            when(cardNumber.getMasked("encrypted")).thenReturn("**** **** **** 1234");
+
+            Page<CardDTO> result = cardService.getPendingBlockRequests(Pageable.unpaged());
+
+            assertThat(result.getContent().get(0).getBlockRequest()).isTrue();
+        }
+
+        @Test
+        void processNextBlockRequests_ShouldBlockClaimedCards() {
+            card.setBlockRequest(true);
+            when(cardRepository.lockNextPendingBlockRequests(5)).thenReturn(List.of(card));
+            when(cardNumber.getMasked("encrypted")).thenReturn("**** **** **** 1234");
+
+            List<CardDTO> result = cardService.processNextBlockRequests(5);
+
+            assertThat(card.getStatus()).isEqualTo(CardStatus.BLOCKED);
+            assertThat(result).hasSize(1);
+            verify(cardRepository).saveAll(List.of(card));
+        }
+
+        @Test
+        void processNextBlockRequests_ShouldClampLimit() {
+            when(cardRepository.lockNextPendingBlockRequests(anyInt())).thenReturn(List.of());
+
+            cardService.processNextBlockRequests(100_000);
+            cardService.processNextBlockRequests(0);
+
+            verify(cardRepository).lockNextPendingBlockRequests(100);
+            verify(cardRepository).lockNextPendingBlockRequests(1);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.JwtSigningKey;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.JwtSigningKeyRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Тесты для JwtService")
+class JwtServiceTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-0123456789";
+
+    private JwtService jwtService;
+    private User user;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jwtService = new JwtService(new JwtKeyRing(new ByteArrayResource(SECRET.getBytes(StandardCharsets.UTF_8)),
+                null, "HS256", Duration.ofDays(1), Duration.ofHours(1), Duration.ZERO, Duration.ZERO, Duration.ZERO),
+                100);
+        jwtService.jwtExpirationAccess = 60_000;
+        jwtService.jwtExpirationRefresh = 120_000;
+
+        user = new User(1L, "user1", "pass", Role.USER);
+    }
+
+    @Nested
+    @DisplayName("Тесты метода parseClaims()")
+    class ParseClaimsTests {
+
+        @Test
+        @DisplayName("Возвращает subject и роль из подписанного токена")
+        void parseClaims_ValidToken_ReturnsClaims() {
+            String token = jwtService.generateAccessToken(user);
+            Claims claims = jwtService.parseClaims(token);
+
+            // В режиме HS256 kid не выставляется, как и раньше
+            assertThat(new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))),
+                    StandardCharsets.UTF_8)).doesNotContain("kid");
+
+            assertThat(claims.getSubject()).isEqualTo("user1");
+            assertThat(claims.get("role", String.class)).isEqualTo("USER");
+        }
+
+        @Test
+        @DisplayName("Различает access- и refresh-токены по типу")
+        void parseClaims_TokenType() {
+            assertThat(jwtService.isAccessToken(jwtService.parseClaims(jwtService.generateAccessToken(user))))
+                    .isTrue();
+            assertThat(jwtService.isAccessToken(jwtService.parseClaims(jwtService.generateRefreshToken(user))))
+                    .isFalse();
+        }
+
+        @Test
+        @DisplayName("Отклоняет токен с изменённой подписью")
+        void parseClaims_TamperedToken_Throws() {
+            String token = jwtService.generateAccessToken(user);
+            String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+            assertThatThrownBy(() -> jwtService.parseClaims(tampered))
+                    .isInstanceOf(JwtException.class);
+        }
+
+        @Test
+        @DisplayName("Отклоняет просроченный токен")
+        void parseClaims_ExpiredToken_Throws() {
+            jwtService.jwtExpirationAccess = -1_000;
+            String token = jwtService.generateAccessToken(user);
+
+            assertThatThrownBy(() -> jwtService.parseClaims(token))
+                    .isInstanceOf(ExpiredJwtException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("Тесты метода isTokenValid()")
+    class IsTokenValidTests {
+
+        @Test
+        @DisplayName("Проверяет владельца по уже разобранным claims")
+        void isTokenValid_Claims_ComparesSubject() {
+            Claims claims = jwtService.parseClaims(jwtService.generateAccessToken(user));
+
+            UserDetails owner = org.springframework.security.core.userdetails.User
+                    .withUsername("user1").password("x").roles("USER").build();
+            UserDetails other = org.springframework.security.core.userdetails.User
+                    .withUsername("user2").password("x").roles("USER").build();
+
+            assertThat(jwtService.isTokenValid(claims, owner)).isTrue();
+            assertThat(jwtService.isTokenValid(claims, other)).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("Подпись ES256 с ротацией ключей")
+    class Es256Tests {
+
+        private final List<JwtSigningKey> rows = new CopyOnWriteArrayList<>();
+        private JwtSigningKeyRepository repository;
+        private JwtKeyRing keyRing;
+
+        private JwtService es256Service(JwtKeyRing keyRing, long verifiedCacheSize) {
+            JwtService service = new JwtService(keyRing, verifiedCacheSize);
+            service.jwtExpirationAccess = 60_000;
+            return service;
+        }
+
+        private JwtKeyRing ring(String secret, Duration rotationInterval, Duration overlap) throws Exception {
+            return ring(secret, rotationInterval, overlap, Duration.ZERO);
+        }
+
+        private JwtKeyRing ring(String secret, Duration rotationInterval, Duration overlap,
+                                Duration publishDelay) throws Exception {
+            return new JwtKeyRing(new ByteArrayResource(secret.getBytes(StandardCharsets.UTF_8)), repository, "ES256",
+                    rotationInterval, overlap, publishDelay, Duration.ZERO, Duration.ZERO);
+        }
+
+        // Таблица jwt_signing_keys в памяти, общая для всех JwtKeyRing теста
+        @BeforeEach
+        void setUp() throws Exception {
+            repository = mock(JwtSigningKeyRepository.class);
+            when(repository.findAll()).thenAnswer(inv -> List.copyOf(rows));
+            when(repository.insertIfNoneActiveAfter(anyString(), anyString(), anyString(), any(), any()))
+                    .thenAnswer(inv -> {
+                        LocalDateTime after = inv.getArgument(4);
+                        if (rows.stream().anyMatch(row -> row.getActiveFrom().isAfter(after))) {
+                            return 0;
+                        }
+                        rows.add(new JwtSigningKey(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2),
+                                inv.getArgument(3)));
+                        return 1;
+                    });
+            doAnswer(inv -> {
+                Collection<String> kids = inv.getArgument(0);
+                rows.removeIf(row -> kids.contains(row.getKid()));
+                return null;
+            }).when(repository).deleteAllByIdInBatch(any());
+
+            keyRing = ring(SECRET, Duration.ofDays(1), Duration.ofHours(1));
+        }
+
+        @Test
+        @DisplayName("Токен подписывается текущим ключом и содержит kid")
+        void generateAccessToken_HasKid() {
+            JwtService service = es256Service(keyRing, 0);
+            String token = service.generateAccessToken(user);
+
+            String header = new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))),
+                    StandardCharsets.UTF_8);
+            assertThat(header).contains("\"alg\":\"ES256\"").contains(keyRing.getSigningKeyId());
+            assertThat(service.parseClaims(token).getSubject()).isEqualTo("user1");
+        }
+
+        @Test
+        @DisplayName("Другой узел и перезапуск используют те же ключи из БД")
+        void keys_SharedThroughDatabase() throws Exception {
+            String token = es256Service(keyRing, 0).generateAccessToken(user);
+
+            JwtKeyRing otherNode = ring(SECRET, Duration.ofDays(1), Duration.ofHours(1));
+
+            assertThat(rows).hasSize(1);
+            assertThat(otherNode.getSigningKeyId()).isEqualTo(keyRing.getSigningKeyId());
+            assertThat(es256Service(otherNode, 0).parseClaims(token).getSubject()).isEqualTo("user1");
+        }
+
+        @Test
+        @DisplayName("Приватный ключ в БД не читается с другим jwt.secret-file")
+        void keys_EncryptedWithSecret() {
+            assertThat(rows.get(0).getPrivateKey()).isNotEmpty();
+
+            assertThatThrownBy(() -> ring("another-secret", Duration.ofDays(1), Duration.ofHours(1)))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+
+        @Test
+        @DisplayName("Ротация на одном узле подхватывается другим при обновлении")
+        void refresh_PicksUpRotationFromOtherNode() throws Exception {
+            JwtKeyRing rotating = ring(SECRET, Duration.ZERO, Duration.ofHours(1));
+            String oldKid = keyRing.getSigningKeyId();
+
+            rotating.refresh();
+            keyRing.refresh();
+
+            assertThat(rotating.getSigningKeyId()).isNotEqualTo(oldKid);
+            assertThat(keyRing.getSigningKeyId()).isEqualTo(rotating.getSigningKeyId());
+        }
+
+        @Test
+        @DisplayName("После ротации старый ключ принимается в пределах overlap")
+        void rotate_OldKeyStillVerifies() throws Exception {
+            JwtKeyRing ring = ring(SECRET, Duration.ZERO, Duration.ofHours(1));
+            JwtService service = es256Service(ring, 0);
+            String oldToken = service.generateAccessToken(user);
+            String oldKid = ring.getSigningKeyId();
+
+            ring.refresh();
+
+            assertThat(ring.getSigningKeyId()).isNotEqualTo(oldKid);
+            assertThat(service.parseClaims(oldToken).getSubject()).isEqualTo("user1");
+            assertThat(ring.getPublicJwks()).extracting(jwk -> jwk.get("kid"))
+                    .containsExactlyInAnyOrder(oldKid, ring.getSigningKeyId());
+        }
+
+        @Test
+        @DisplayName("Следующий ключ публикуется в JWKS раньше, чем начинает подписывать")
+        void rotate_PublishesNextKeyBeforeSigning() throws Exception {
+            JwtKeyRing ring = ring(SECRET, Duration.ZERO, Duration.ofHours(1), Duration.ofMillis(300));
+            JwtService service = es256Service(ring, 0);
+            String oldKid = ring.getSigningKeyId();
+
+            ring.refresh();
+            // Пока следующий ключ ждёт, ещё один не добавляется
+            ring.refresh();
+
+            assertThat(rows).hasSize(2);
+            String nextKid = rows.stream().map(JwtSigningKey::getKid).filter(kid -> !kid.equals(oldKid))
+                    .findFirst().orElseThrow();
+            assertThat(ring.getPublicJwks()).extracting(jwk -> jwk.get("kid"))
+                    .containsExactlyInAnyOrder(oldKid, nextKid);
+            assertThat(ring.getSigningKeyId()).isEqualTo(oldKid);
+            String token = service.generateAccessToken(user);
+            assertThat(new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))),
+                    StandardCharsets.UTF_8)).contains(oldKid);
+
+            Thread.sleep(400);
+
+            assertThat(ring.getSigningKeyId()).isEqualTo(nextKid);
+        }
+
+        @Test
+        @DisplayName("publish-delay короче refresh-interval + max-age JWKS отклоняется при старте")
+        void constructor_PublishDelayShorterThanJwksMaxAge_Throws() {
+            assertThatThrownBy(() -> new JwtKeyRing(new ByteArrayResource(SECRET.getBytes(StandardCharsets.UTF_8)),
+                    repository, "ES256", Duration.ofDays(1), Duration.ofHours(1),
+                    Duration.ofMinutes(5), Duration.ofMinutes(1), Duration.ofMinutes(5)))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        @Test
+        @DisplayName("Ключ без overlap перестаёт приниматься сразу после ротации")
+        void rotate_WithoutOverlap_RejectsOldKey() throws Exception {
+            JwtKeyRing ring = ring(SECRET, Duration.ZERO, Duration.ZERO);
+            JwtService service = es256Service(ring, 0);
+            String oldToken = service.generateAccessToken(user);
+
+            ring.refresh();
+            Thread.sleep(5);
+
+            assertThatThrownBy(() -> service.parseClaims(oldToken)).isInstanceOf(JwtException.class);
+        }
+
+        @Test
+        @DisplayName("Токен из кэша проверенных отклоняется после вывода его ключа из оборота")
+        void parseClaims_VerifiedCache_RejectsRetiredKey() throws Exception {
+            JwtKeyRing ring = ring(SECRET, Duration.ZERO, Duration.ZERO);
+            JwtService cached = es256Service(ring, 100);
+            String token = cached.generateAccessToken(user);
+            cached.parseClaims(token);
+
+            ring.refresh();
+            Thread.sleep(5);
+
+            assertThatThrownBy(() -> cached.parseClaims(token)).isInstanceOf(JwtException.class);
+        }
+
+        @Test
+        @DisplayName("Изменение возвращённых claims не попадает в кэш проверенных")
+        void parseClaims_VerifiedCache_ReturnsCopy() {
+            JwtService cached = es256Service(keyRing, 100);
+            String token = cached.generateAccessToken(user);
+
+            cached.parseClaims(token).setSubject("intruder");
+
+            assertThat(cached.parseClaims(token).getSubject()).isEqualTo("user1");
+            assertThat(cached.parseClaims(token).getExpiration()).isInTheFuture();
+        }
+
+        @Test
+        @DisplayName("JWKS содержит координаты P-256 фиксированной длины")
+        void getPublicJwks_Format() {
+            Map<String, Object> jwk = keyRing.getPublicJwks().get(0);
+
+            assertThat(jwk).containsEntry("kty", "EC").containsEntry("crv", "P-256").containsEntry("alg", "ES256");
+            assertThat((String) jwk.get("x")).hasSize(43);
+            assertThat((String) jwk.get("y")).hasSize(43);
+        }
+    }
+}
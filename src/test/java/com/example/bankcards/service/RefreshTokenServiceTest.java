@@ -0,0 +1,171 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Тесты для RefreshTokenService")
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(refreshTokenService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(refreshTokenService, "purgeBatchSize", 100);
+        ReflectionTestUtils.setField(refreshTokenService, "purgeMaxBatches", 3);
+        ReflectionTestUtils.setField(refreshTokenService, "maxSessions", 2);
+    }
+
+    @Nested
+    @DisplayName("Тесты метода purgeExpired()")
+    class PurgeExpiredTests {
+
+        @Test
+        @DisplayName("Удаляет пачками, пока пачка заполнена")
+        void purgeExpired_StopsOnPartialBatch() {
+            when(refreshTokenRepository.deleteExpiredBatch(any(), eq(100))).thenReturn(100, 40);
+
+            int purged = refreshTokenService.purgeExpired();
+
+            assertThat(purged).isEqualTo(140);
+            verify(refreshTokenRepository, times(2)).deleteExpiredBatch(any(), eq(100));
+            assertThat(meterRegistry.get("refresh_tokens.purged").counter().count()).isEqualTo(140);
+        }
+
+        @Test
+        @DisplayName("Не делает больше max-batches пачек за запуск")
+        void purgeExpired_RespectsMaxBatches() {
+            when(refreshTokenRepository.deleteExpiredBatch(any(), eq(100))).thenReturn(100);
+
+            assertThat(refreshTokenService.purgeExpired()).isEqualTo(300);
+            verify(refreshTokenRepository, times(3)).deleteExpiredBatch(any(), eq(100));
+        }
+    }
+
+    @Nested
+    @DisplayName("Тесты хранения токенов")
+    class StorageTests {
+
+        @Test
+        @DisplayName("В БД сохраняется SHA-256 хэш, а не сам токен")
+        void saveRefreshToken_StoresHash() {
+            refreshTokenService.saveRefreshToken("refresh123", "user1", LocalDateTime.now().plusDays(1));
+
+            ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+            verify(refreshTokenRepository).save(captor.capture());
+            assertThat(captor.getValue().getTokenHash())
+                    .hasSize(32)
+                    .isEqualTo(RefreshTokenService.hash("refresh123"));
+            assertThat(captor.getValue().isNew()).isTrue();
+        }
+
+        @Test
+        @DisplayName("Новый вход закрывает самые старые сессии сверх лимита")
+        void saveRefreshToken_EnforcesSessionCap() {
+            byte[] newest = new byte[]{1};
+            byte[] oldest = new byte[]{2};
+            when(refreshTokenRepository.findActiveFamilies(eq("user1"), any())).thenReturn(List.of(newest, oldest));
+
+            refreshTokenService.saveRefreshToken("refresh123", "user1", LocalDateTime.now().plusDays(1));
+
+            verify(refreshTokenRepository).deleteByFamilyId(oldest);
+            verify(refreshTokenRepository, never()).deleteByFamilyId(newest);
+        }
+
+        @Test
+        @DisplayName("Logout удаляет семейство по числу удалённых строк")
+        void deleteRefreshToken_ReturnsWhetherDeleted() {
+            when(refreshTokenRepository.deleteFamilyByTokenHash(any())).thenReturn(2, 0);
+
+            assertThat(refreshTokenService.deleteRefreshToken("refresh123")).isTrue();
+            assertThat(refreshTokenService.deleteRefreshToken("refresh123")).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("Тесты ротации")
+    class RotationTests {
+
+        private RefreshToken stored(String token, LocalDateTime expiryDate) {
+            return new RefreshToken(RefreshTokenService.hash(token), "user1", expiryDate,
+                    RefreshTokenService.hash("login"));
+        }
+
+        @Test
+        @DisplayName("Первое использование помечает токен и возвращает его")
+        void useRefreshToken_FirstUse() {
+            byte[] tokenHash = RefreshTokenService.hash("refresh123");
+            when(refreshTokenRepository.findById(any()))
+                    .thenReturn(Optional.of(stored("refresh123", LocalDateTime.now().plusDays(1))));
+            when(refreshTokenRepository.markUsed(eq(tokenHash), any())).thenReturn(1);
+
+            assertThat(refreshTokenService.useRefreshToken("refresh123"))
+                    .get().extracting(RefreshToken::getUsername).isEqualTo("user1");
+            verify(refreshTokenRepository, never()).deleteByFamilyId(any());
+        }
+
+        @Test
+        @DisplayName("Повторное использование удаляет всё семейство")
+        void useRefreshToken_Reuse_RevokesFamily() {
+            when(refreshTokenRepository.findById(any()))
+                    .thenReturn(Optional.of(stored("refresh123", LocalDateTime.now().plusDays(1))));
+            when(refreshTokenRepository.markUsed(any(), any())).thenReturn(0);
+
+            assertThat(refreshTokenService.useRefreshToken("refresh123")).isEmpty();
+            verify(refreshTokenRepository).deleteByFamilyId(RefreshTokenService.hash("login"));
+            assertThat(meterRegistry.get("refresh_tokens.reused").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Истёкший токен удаляется без ротации")
+        void useRefreshToken_Expired() {
+            when(refreshTokenRepository.findById(any()))
+                    .thenReturn(Optional.of(stored("old", LocalDateTime.now().minusDays(1))));
+
+            assertThat(refreshTokenService.useRefreshToken("old")).isEmpty();
+            verify(refreshTokenRepository).deleteByTokenHash(RefreshTokenService.hash("old"));
+            verify(refreshTokenRepository, never()).markUsed(any(), any());
+        }
+
+        @Test
+        @DisplayName("Новый токен наследует семейство предыдущего")
+        void saveRotatedToken_KeepsFamily() {
+            RefreshToken previous = stored("refresh123", LocalDateTime.now().plusDays(1));
+
+            refreshTokenService.saveRotatedToken("refresh456", previous, LocalDateTime.now().plusDays(1));
+
+            ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+            verify(refreshTokenRepository).save(captor.capture());
+            assertThat(captor.getValue().getTokenHash()).isEqualTo(RefreshTokenService.hash("refresh456"));
+            assertThat(captor.getValue().getFamilyId()).isEqualTo(previous.getFamilyId());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.UserDeletionDTO;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.UserDetailsCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("Тесты для UserDeletionService")
+class UserDeletionServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardTransactionRepository transactionRepository;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private CardSummaryCache summaryCache;
+
+    private UserDeletionService deletionService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        deletionService = new UserDeletionService(userRepository, cardRepository, transactionRepository,
+                userDetailsCache, summaryCache, 2, 10, Duration.ofMinutes(1));
+        user = new User(1L, "user1", "pass", Role.USER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        deletionService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Небольшой пользователь удаляется сразу: переводы, затем карты, затем сам пользователь")
+    void delete_Small_RunsInBatches() {
+        when(cardRepository.countByOwnerId(1L)).thenReturn(3L);
+        when(transactionRepository.countByOwnerIdUpTo(1L, 10)).thenReturn(5L);
+        when(transactionRepository.deleteBatchByOwnerId(1L, 2)).thenReturn(2, 2, 1);
+        when(cardRepository.deleteBatchByOwnerId(1L, 2)).thenReturn(2, 1);
+
+        UserDeletionDTO result = deletionService.delete(user);
+
+        assertThat(result.getStatus()).isEqualTo(UserDeletionDTO.Status.DONE);
+        assertThat(result.getTransactionsDeleted()).isEqualTo(5);
+        assertThat(result.getCardsDeleted()).isEqualTo(3);
+        assertThat(result.getFinishedAt()).isNotNull();
+
+        InOrder inOrder = inOrder(transactionRepository, cardRepository, userRepository);
+        inOrder.verify(transactionRepository, times(3)).deleteBatchByOwnerId(1L, 2);
+        inOrder.verify(cardRepository, times(2)).deleteBatchByOwnerId(1L, 2);
+        inOrder.verify(userRepository).deleteById(1L);
+        verify(userDetailsCache).evict("user1");
+        verify(summaryCache).evict("user1");
+    }
+
+    @Test
+    @DisplayName("Большой пользователь удаляется в фоне, прогресс доступен по id")
+    void delete_Large_RunsAsync() throws Exception {
+        when(cardRepository.countByOwnerId(1L)).thenReturn(4L);
+        when(transactionRepository.countByOwnerIdUpTo(1L, 10)).thenReturn(10L);
+        when(transactionRepository.deleteBatchByOwnerId(1L, 2)).thenReturn(0);
+        when(cardRepository.deleteBatchByOwnerId(1L, 2)).thenReturn(0);
+
+        UserDeletionDTO started = deletionService.delete(user);
+
+        assertThat(deletionService.getProgress(1L)).containsSame(started);
+        verify(userRepository, timeout(5000)).deleteById(1L);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (started.getStatus() == UserDeletionDTO.Status.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(started.getStatus()).isEqualTo(UserDeletionDTO.Status.DONE);
+    }
+
+    @Test
+    @DisplayName("Перевод, появившийся во время удаления, приводит к повторному проходу")
+    void delete_RetriesOnConstraintViolation() {
+        when(cardRepository.deleteBatchByOwnerId(eq(1L), anyInt()))
+                .thenThrow(new DataIntegrityViolationException("fk_tx_from_card"))
+                .thenReturn(1);
+        when(transactionRepository.deleteBatchByOwnerId(eq(1L), anyInt())).thenReturn(0, 1);
+
+        UserDeletionDTO result = deletionService.delete(user);
+
+        assertThat(result.getStatus()).isEqualTo(UserDeletionDTO.Status.DONE);
+        assertThat(result.getTransactionsDeleted()).isEqualTo(1);
+        verify(userRepository).deleteById(1L);
+    }
+
+    @Test
+    @DisplayName("Ошибка удаления отражается в статусе")
+    void delete_Failure_MarksFailed() {
+        when(cardRepository.deleteBatchByOwnerId(eq(1L), anyInt()))
+                .thenThrow(new DataIntegrityViolationException("fk_tx_from_card"));
+
+        UserDeletionDTO result = deletionService.delete(user);
+
+        assertThat(result.getStatus()).isEqualTo(UserDeletionDTO.Status.FAILED);
+        verify(userRepository, never()).deleteById(any());
+        verify(userDetailsCache).evict("user1");
+    }
+}
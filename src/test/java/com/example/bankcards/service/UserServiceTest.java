@@ -1,11 +1,17 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.OwnerCardCount;
+import com.example.bankcards.dto.UserDeletionDTO;
 import com.example.bankcards.dto.UserDTO;
+import com.example.bankcards.dto.UserSearchPageDTO;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.ConflictErrorException;
 import com.example.bankcards.exception.UserNotFoundException;
+import com.example.bankcards.repository.CardRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.RevokedUserRegistry;
+import com.example.bankcards.security.UserDetailsCache;
 import com.example.bankcards.service.UserService;
 import com.example.bankcards.util.UserMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,6 +25,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
 
@@ -28,6 +35,7 @@ import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 
@@ -40,6 +48,21 @@ class UserServiceTest {
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private RevokedUserRegistry revokedUserRegistry;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private UserDeletionService userDeletionService;
+
+    @Mock
+    private CardRepository cardRepository;
+
     @InjectMocks
     private UserService userService;
 
@@ -100,6 +123,52 @@ class UserServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("Тесты метода searchUsers()")
+    class SearchUsersTests {
+
+        @Test
+        void searchUsers_MoreThanPage_ShouldReturnNextCursor() {
+            User user2 = new User(2L, "user2", "pass", Role.USER);
+            User user3 = new User(3L, "user3", "pass", Role.USER);
+            when(userRepository.searchByUsernamePrefix("user%", "", PageRequest.of(0, 3)))
+                    .thenReturn(List.of(user, user2, user3));
+
+            UserSearchPageDTO result = userService.searchUsers("user", null, 2, false);
+
+            assertThat(result.getUsers()).extracting("username").containsExactly("user1", "user2");
+            assertThat(result.getUsers()).extracting("cards").containsOnlyNulls();
+            assertThat(result.getNext()).isEqualTo("user2");
+            verifyNoInteractions(cardRepository);
+        }
+
+        @Test
+        void searchUsers_EscapesWildcards() {
+            when(userRepository.searchByUsernamePrefix(any(), any(), any())).thenReturn(List.of());
+
+            UserSearchPageDTO result = userService.searchUsers("a_b%", "a", 10, true);
+
+            assertThat(result.getUsers()).isEmpty();
+            assertThat(result.getNext()).isNull();
+            verify(userRepository).searchByUsernamePrefix(eq("a\\_b\\%%"), eq("a"), any());
+        }
+
+        @Test
+        void searchUsers_WithCards_ShouldCountInOneQuery() {
+            OwnerCardCount count = mock(OwnerCardCount.class);
+            when(count.getOwnerId()).thenReturn(1L);
+            when(count.getCards()).thenReturn(4L);
+            User user2 = new User(2L, "user2", "pass", Role.USER);
+            when(userRepository.searchByUsernamePrefix(any(), any(), any())).thenReturn(List.of(user, user2));
+            when(cardRepository.countByOwnerIds(List.of(1L, 2L))).thenReturn(List.of(count));
+
+            UserSearchPageDTO result = userService.searchUsers("user", null, 10, true);
+
+            assertThat(result.getUsers()).extracting("cards").containsExactly(4L, 0L);
+            verify(cardRepository).countByOwnerIds(any());
+        }
+    }
+
     @Nested
     @DisplayName("Тесты метода getUser()")
     class GetUserTests {
@@ -132,13 +201,17 @@ class UserServiceTest {
     class DeleteUserTests {
 
         @Test
-        void deleteUser_Valid_ShouldReturnTrue() {
+        void deleteUser_Valid_ShouldStartDeletion() {
+            UserDeletionDTO deletion = new UserDeletionDTO(1L, "user1", UserDeletionDTO.Status.DONE, 0, 0, null, null);
             when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+            when(userDeletionService.delete(user)).thenReturn(deletion);
 
-            boolean result = userService.deleteUser(1L);
+            UserDeletionDTO result = userService.deleteUser(1L);
 
-            assertThat(result).isTrue();
-            verify(userRepository).delete(user);
+            assertThat(result).isSameAs(deletion);
+            verify(revokedUserRegistry).revoke("user1");
+            verify(refreshTokenService).deleteAllRefreshTokens("user1");
+            verify(userDetailsCache).evict("user1");
         }
 
         @Test
@@ -159,7 +232,8 @@ class UserServiceTest {
                     .isInstanceOf(ConflictErrorException.class)
                     .hasMessage("Админ не может управлять другими админами");
 
-            verify(userRepository, never()).delete(any());
+            verify(userDeletionService, never()).delete(any());
+            verify(revokedUserRegistry, never()).revoke(any());
         }
     }
 }